@@ -0,0 +1,116 @@
+package org.robolectric;
+
+import org.robolectric.util.Util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Remembers where Maven put the jars for a set of dependencies, so later JVMs can skip resolution altogether.
+ *
+ * Entries are keyed by the dependency coordinates and the local repository path, and are only trusted while every
+ * jar they name still has the size and modification time it had when it was resolved.
+ */
+public class ResolvedDependencyCache {
+    private static final String KEY = "key";
+    private static final String JAR_COUNT = "jars";
+
+    private final File cacheDir;
+
+    public ResolvedDependencyCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public static String keyFor(String localRepositoryPath, String... coordinates) {
+        StringBuilder buf = new StringBuilder(localRepositoryPath);
+        for (String coordinate : coordinates) {
+            buf.append('|').append(coordinate);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @return the previously resolved jars, or null if there are none or any of them has changed since
+     */
+    public List<File> getJarsFor(String key) {
+        File cacheFile = cacheFileFor(key);
+        if (!cacheFile.exists()) return null;
+
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(cacheFile);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null; // no problem, we'll just resolve again
+        }
+
+        if (!key.equals(properties.getProperty(KEY))) return null;
+
+        try {
+            int count = Integer.parseInt(properties.getProperty(JAR_COUNT));
+            List<File> jars = new ArrayList<File>(count);
+            for (int i = 0; i < count; i++) {
+                File jar = new File(properties.getProperty("jar." + i));
+                if (!jar.isFile()
+                        || jar.length() != Long.parseLong(properties.getProperty("jar." + i + ".size"))
+                        || jar.lastModified() != Long.parseLong(properties.getProperty("jar." + i + ".modified"))) {
+                    return null;
+                }
+                jars.add(jar);
+            }
+            return jars;
+        } catch (RuntimeException e) {
+            return null; // garbled entry; resolve again and overwrite it
+        }
+    }
+
+    public void putJarsFor(String key, List<File> jars) {
+        Properties properties = new Properties();
+        properties.setProperty(KEY, key);
+        properties.setProperty(JAR_COUNT, String.valueOf(jars.size()));
+        for (int i = 0; i < jars.size(); i++) {
+            File jar = jars.get(i);
+            properties.setProperty("jar." + i, jar.getAbsolutePath());
+            properties.setProperty("jar." + i + ".size", String.valueOf(jar.length()));
+            properties.setProperty("jar." + i + ".modified", String.valueOf(jar.lastModified()));
+        }
+
+        File cacheFile = cacheFileFor(key);
+        try {
+            cacheDir.mkdirs();
+            File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+            OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                properties.store(out, "resolved Robolectric dependencies");
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                if (!tmpFile.renameTo(cacheFile)) tmpFile.delete();
+            }
+        } catch (IOException e) {
+            // no problem, we'll just resolve again next time
+        }
+    }
+
+    File cacheFileFor(String key) {
+        try {
+            return new File(cacheDir, "resolved-dependencies-" + Util.sha1Hex(key.getBytes("UTF-8")) + ".properties");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
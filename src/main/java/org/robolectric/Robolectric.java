@@ -449,6 +449,7 @@ public class Robolectric {
     public static Application application;
     public static final int DEFAULT_SDK_VERSION = 16;
     private static Set<String> unloadableClassNames = new HashSet<String>();
+    private static final Set<Class<?>> shadowsWithDirtyStaticState = new HashSet<Class<?>>();
 
     public static <T> T newInstanceOf(Class<T> clazz) {
         return RobolectricInternals.newInstanceOf(clazz);
@@ -814,23 +815,40 @@ public class Robolectric {
 
     public static void resetStaticState() {
         getShadowWrangler().silence();
+        if (Robolectric.application != null) shadowOf(Robolectric.application).shutDownBackgroundExecutor();
         Robolectric.application = null;
-        ShadowAccountManager.reset();
-        ShadowBitmapFactory.reset();
-        ShadowDrawable.reset();
+        if (takeDirtyStaticState(ShadowAccountManager.class)) ShadowAccountManager.reset();
+        if (takeDirtyStaticState(ShadowBitmapFactory.class)) ShadowBitmapFactory.reset();
+        if (takeDirtyStaticState(ShadowDrawable.class)) ShadowDrawable.reset();
         ShadowMediaStore.reset();
-        ShadowLog.reset();
+        if (takeDirtyStaticState(ShadowLog.class)) ShadowLog.reset();
         ShadowContext.clearFilesAndCache();
         ShadowLooper.resetThreadLoopers();
-        ShadowDialog.reset();
-        ShadowContentResolver.reset();
+        if (takeDirtyStaticState(ShadowDialog.class)) ShadowDialog.reset();
+        if (takeDirtyStaticState(ShadowContentResolver.class)) ShadowContentResolver.reset();
 //        ShadowLocalBroadcastManager.reset();
-        ShadowMimeTypeMap.reset();
+        if (takeDirtyStaticState(ShadowMimeTypeMap.class)) ShadowMimeTypeMap.reset();
         ShadowPowerManager.reset();
-        ShadowStatFs.reset();
+        if (takeDirtyStaticState(ShadowStatFs.class)) ShadowStatFs.reset();
         ShadowTypeface.reset();
     }
 
+    /**
+     * Shadows call this whenever they change their static state, so {@link #resetStaticState()} can skip resetting
+     * the ones that haven't been touched since the last test.
+     */
+    public static void markStaticStateDirty(Class<?> shadowClass) {
+        synchronized (shadowsWithDirtyStaticState) {
+            shadowsWithDirtyStaticState.add(shadowClass);
+        }
+    }
+
+    private static boolean takeDirtyStaticState(Class<?> shadowClass) {
+        synchronized (shadowsWithDirtyStaticState) {
+            return shadowsWithDirtyStaticState.remove(shadowClass);
+        }
+    }
+
     public static <T> T directlyOn(T shadowedObject) {
         return RobolectricInternals.directlyOn(shadowedObject);
     }
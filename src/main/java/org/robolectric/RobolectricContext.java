@@ -7,38 +7,87 @@ import org.robolectric.bytecode.AndroidTranslator;
 import org.robolectric.bytecode.AsmInstrumentingClassLoader;
 import org.robolectric.bytecode.ClassCache;
 import org.robolectric.bytecode.ClassHandler;
+import org.robolectric.bytecode.InstrumentedClassCache;
 import org.robolectric.bytecode.JavassistInstrumentingClassLoader;
+import org.robolectric.bytecode.MappedClassCache;
 import org.robolectric.bytecode.RobolectricInternals;
 import org.robolectric.bytecode.Setup;
 import org.robolectric.bytecode.ShadowWrangler;
-import org.robolectric.bytecode.ZipClassCache;
 import org.robolectric.internal.RobolectricTestRunnerInterface;
 import org.robolectric.res.AndroidResourcePathFinder;
 import org.robolectric.res.ResourcePath;
+import org.robolectric.res.ResourceTableCache;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 
 import static org.robolectric.RobolectricTestRunner.isBootstrapped;
 
 public class RobolectricContext {
-    private static final Map<Class<? extends RobolectricTestRunner>, RobolectricContext> contextsByTestRunner = new HashMap<Class<? extends RobolectricTestRunner>, RobolectricContext>();
+    /**
+     * Set this to the android-base, android-kxml2, android-luni and json jars (separated by the path separator) to skip
+     * Maven entirely.
+     */
+    public static final String DEPENDENCY_JARS_PROPERTY = "robolectric.dependency.jars";
+
+    /**
+     * Set this to the number of threads you run test classes on (e.g. with JUnit's ParallelComputer.classes()).
+     * Each test runner class then gets that many contexts, each with its own class loader and so its own
+     * application, shadow bindings, loopers, schedulers and database connection. Test classes are dealt out to the
+     * contexts in turn, and test classes sharing a context never run at the same time. Running the methods of one
+     * test class in parallel isn't supported.
+     */
+    public static final String PARALLEL_CONTEXTS_PROPERTY = "robolectric.parallelContexts";
+
+    /**
+     * Set this to the directory to cache SDK resources in, instead of ~/.robolectric/system-resource-tables.
+     */
+    public static final String SYSTEM_RESOURCE_CACHE_PATH_PROPERTY = "robolectric.systemResourceCache.path";
+    private static final long SYSTEM_RESOURCE_CACHE_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final Map<Class<? extends RobolectricTestRunner>, ContextPool> contextsByTestRunner = new HashMap<Class<? extends RobolectricTestRunner>, ContextPool>();
+    private static final Map<ClassLoader, RobolectricContext> contextsByClassLoader = new HashMap<ClassLoader, RobolectricContext>();
 
     private final AndroidManifest appManifest;
     private final ClassLoader robolectricClassLoader;
     private final ClassHandler classHandler;
+    /**
+     * @deprecated racy when test classes are bootstrapped on several threads; use {@link #contextFor(Class)}
+     */
     public static RobolectricContext mostRecentRobolectricContext; // ick, race condition
 
     public interface Factory {
         RobolectricContext create();
     }
 
+    private static class ContextPool {
+        private final List<RobolectricContext> contexts = new ArrayList<RobolectricContext>();
+        private int next;
+
+        RobolectricContext nextContext(Factory factory) {
+            int index = next++ % parallelContexts();
+            if (index < contexts.size()) return contexts.get(index);
+
+            RobolectricContext robolectricContext;
+            try {
+                robolectricContext = factory.create();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            contexts.add(robolectricContext);
+            contextsByClassLoader.put(robolectricContext.getRobolectricClassLoader(), robolectricContext);
+            return robolectricContext;
+        }
+    }
+
     public static Class<?> bootstrap(Class<? extends RobolectricTestRunner> robolectricTestRunnerClass, Class<?> testClass, Factory factory) {
         if (isBootstrapped(robolectricTestRunnerClass) || isBootstrapped(testClass)) {
             if (!isBootstrapped(testClass)) throw new IllegalStateException("test class is somehow not bootstrapped");
@@ -47,15 +96,12 @@ public class RobolectricContext {
 
         RobolectricContext robolectricContext;
         synchronized (contextsByTestRunner) {
-            robolectricContext = contextsByTestRunner.get(robolectricTestRunnerClass);
-            if (robolectricContext == null) {
-                try {
-                    robolectricContext = factory.create();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-                contextsByTestRunner.put(robolectricTestRunnerClass, robolectricContext);
+            ContextPool contextPool = contextsByTestRunner.get(robolectricTestRunnerClass);
+            if (contextPool == null) {
+                contextPool = new ContextPool();
+                contextsByTestRunner.put(robolectricTestRunnerClass, contextPool);
             }
+            robolectricContext = contextPool.nextContext(factory);
         }
 
         mostRecentRobolectricContext = robolectricContext;
@@ -63,6 +109,32 @@ public class RobolectricContext {
         return robolectricContext.bootstrapTestClass(testClass);
     }
 
+    /**
+     * @return the context whose class loader loaded the given bootstrapped class
+     */
+    public static RobolectricContext contextFor(Class<?> bootstrappedClass) {
+        synchronized (contextsByTestRunner) {
+            RobolectricContext robolectricContext = contextsByClassLoader.get(bootstrappedClass.getClassLoader());
+            return robolectricContext == null ? mostRecentRobolectricContext : robolectricContext;
+        }
+    }
+
+    static int parallelContexts() {
+        String parallelContexts = System.getProperty(PARALLEL_CONTEXTS_PROPERTY);
+        if (parallelContexts == null || "".equals(parallelContexts.trim())) return 1;
+        return Math.max(1, Integer.parseInt(parallelContexts.trim()));
+    }
+
+    /**
+     * Throws away every context built so far, so the next test class bootstraps into a fresh class loader.
+     */
+    public static void forgetContexts() {
+        synchronized (contextsByTestRunner) {
+            contextsByTestRunner.clear();
+            contextsByClassLoader.clear();
+        }
+    }
+
     public RobolectricContext() {
         Setup setup = createSetup();
         classHandler = createClassHandler(setup);
@@ -75,15 +147,49 @@ public class RobolectricContext {
     }
 
     public ClassCache createClassCache() {
+        return new MappedClassCache(new File(getClassCacheDirectory(), "cached-robolectric-classes").getAbsolutePath(), AndroidTranslator.CACHE_VERSION);
+    }
+
+    /**
+     * Override to return null if you don't want instrumented classes cached between runs.
+     */
+    public InstrumentedClassCache createInstrumentedClassCache(Setup setup) {
+        return new InstrumentedClassCache(new File(getClassCacheDirectory(), "instrumented-classes"), setup, AsmInstrumentingClassLoader.INSTRUMENTOR_VERSION);
+    }
+
+    /**
+     * Override to return null if you don't want loaded resources cached between runs.
+     */
+    public ResourceTableCache createResourceTableCache() {
+        return new ResourceTableCache(new File(getClassCacheDirectory(), "resource-tables"));
+    }
+
+    /**
+     * Override to return null if you don't want the SDK's own resources cached between runs. Unlike the app's, they're
+     * cached in the user's home directory, so every project and forked JVM on the machine can share them; each build of
+     * Robolectric keeps its own tables there, so projects on different versions don't keep overwriting each other's.
+     */
+    public ResourceTableCache createSystemResourceTableCache(int sdkVersion) {
+        String tablePrefix = "android-" + sdkVersion + "-" + ResourceTableCache.getLoaderVersion() + "-";
+        return new ResourceTableCache(getSystemResourceCacheDirectory(), tablePrefix, SYSTEM_RESOURCE_CACHE_MAX_SIZE);
+    }
+
+    protected File getSystemResourceCacheDirectory() {
+        final String systemResourceCachePath = System.getProperty(SYSTEM_RESOURCE_CACHE_PATH_PROPERTY);
+        if (null == systemResourceCachePath || "".equals(systemResourceCachePath.trim())) {
+            return new File(System.getProperty("user.home"), ".robolectric/system-resource-tables");
+        } else {
+            return new File(systemResourceCachePath);
+        }
+    }
+
+    protected File getClassCacheDirectory() {
         final String classCachePath = System.getProperty("cached.robolectric.classes.path");
-        final File classCacheDirectory;
         if (null == classCachePath || "".equals(classCachePath.trim())) {
-            classCacheDirectory = new File("./tmp");
+            return new File("./tmp");
         } else {
-            classCacheDirectory = new File(classCachePath);
+            return new File(classCachePath);
         }
-
-        return new ZipClassCache(new File(classCacheDirectory, "cached-robolectric-classes.jar").getAbsolutePath(), AndroidTranslator.CACHE_VERSION);
     }
 
     public AndroidTranslator createAndroidTranslator(Setup setup, ClassCache classCache) {
@@ -150,11 +256,11 @@ public class RobolectricContext {
         URL[] urls = artifactUrls(realAndroidDependency("android-base"),
                 realAndroidDependency("android-kxml2"),
                 realAndroidDependency("android-luni"),
-                createDependency("org.json", "json", "20080701", "jar", null)
+                "org.json:json:20080701:jar"
         );
         ClassLoader robolectricClassLoader;
         if (useAsm()) {
-            robolectricClassLoader = new AsmInstrumentingClassLoader(setup, urls);
+            robolectricClassLoader = new AsmInstrumentingClassLoader(setup, createInstrumentedClassCache(setup), urls);
         } else {
             ClassCache classCache = createClassCache();
             AndroidTranslator androidTranslator = createAndroidTranslator(setup, classCache);
@@ -193,28 +299,58 @@ public class RobolectricContext {
         return new Setup();
     }
 
-    private URL[] artifactUrls(Dependency... dependencies) {
+    /**
+     * @param coordinates dependencies as <code>groupId:artifactId:version:type[:classifier]</code>
+     */
+    private URL[] artifactUrls(String... coordinates) {
+        String dependencyJars = System.getProperty(DEPENDENCY_JARS_PROPERTY);
+        if (dependencyJars != null && !"".equals(dependencyJars.trim())) {
+            List<File> jars = new ArrayList<File>();
+            for (String path : dependencyJars.split(File.pathSeparator)) {
+                if (path.trim().length() > 0) jars.add(new File(path.trim()));
+            }
+            return toUrls(jars);
+        }
+
+        ResolvedDependencyCache dependencyCache = new ResolvedDependencyCache(getClassCacheDirectory());
+        String key = ResolvedDependencyCache.keyFor(getLocalRepositoryPath(), coordinates);
+        List<File> jars = dependencyCache.getJarsFor(key);
+        if (jars == null) {
+            jars = resolveArtifacts(coordinates);
+            dependencyCache.putJarsFor(key, jars);
+        }
+        return toUrls(jars);
+    }
+
+    private List<File> resolveArtifacts(String... coordinates) {
         DependenciesTask dependenciesTask = new DependenciesTask();
         configureMaven(dependenciesTask);
         Project project = new Project();
         dependenciesTask.setProject(project);
-        for (Dependency dependency : dependencies) {
-            dependenciesTask.addDependency(dependency);
+        for (String coordinate : coordinates) {
+            dependenciesTask.addDependency(createDependency(coordinate));
         }
         dependenciesTask.execute();
 
         @SuppressWarnings("unchecked")
         Hashtable<String, String> artifacts = project.getProperties();
-        URL[] urls = new URL[artifacts.size()];
-        int i = 0;
+        List<File> jars = new ArrayList<File>();
         for (String path : artifacts.values()) {
+            jars.add(new File(path));
+        }
+        return jars;
+    }
+
+    private URL[] toUrls(List<File> jars) {
+        URL[] urls = new URL[jars.size()];
+        int i = 0;
+        for (File jar : jars) {
             try {
-                urls[i++] = new URL("file://" + path);
+                urls[i++] = new URL("file://" + jar.getAbsolutePath());
             } catch (MalformedURLException e) {
                 throw new RuntimeException(e);
             }
         }
-
         return urls;
     }
 
@@ -223,17 +359,30 @@ public class RobolectricContext {
         // maybe you want to override this method and some settings?
     }
 
-    private Dependency realAndroidDependency(String artifactId) {
-        return createDependency("org.robolectric", artifactId, "4.1.2_r1_rc", "jar", "real");
+    /**
+     * Part of the key for cached dependency resolution; override this too if {@link #configureMaven(DependenciesTask)}
+     * points Maven at a different local repository.
+     */
+    protected String getLocalRepositoryPath() {
+        String localRepository = System.getProperty("maven.repo.local");
+        if (localRepository == null || "".equals(localRepository.trim())) {
+            localRepository = new File(new File(System.getProperty("user.home"), ".m2"), "repository").getAbsolutePath();
+        }
+        return localRepository;
+    }
+
+    private String realAndroidDependency(String artifactId) {
+        return "org.robolectric:" + artifactId + ":4.1.2_r1_rc:jar:real";
     }
 
-    private Dependency createDependency(String groupId, String artifactId, String version, String type, String classifier) {
+    private Dependency createDependency(String coordinates) {
+        String[] parts = coordinates.split(":");
         Dependency dependency = new Dependency();
-        dependency.setGroupId(groupId);
-        dependency.setArtifactId(artifactId);
-        dependency.setVersion(version);
-        dependency.setType(type);
-        dependency.setClassifier(classifier);
+        dependency.setGroupId(parts[0]);
+        dependency.setArtifactId(parts[1]);
+        dependency.setVersion(parts[2]);
+        dependency.setType(parts[3]);
+        dependency.setClassifier(parts.length > 4 ? parts[4] : null);
         return dependency;
     }
 
@@ -2,6 +2,7 @@ package org.robolectric;
 
 import android.app.Application;
 import android.content.res.Resources;
+import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
@@ -13,6 +14,7 @@ import org.robolectric.annotation.WithConstantInt;
 import org.robolectric.annotation.WithConstantString;
 import org.robolectric.bytecode.ClassHandler;
 import org.robolectric.bytecode.InstrumentingClassLoader;
+import org.robolectric.bytecode.ShadowWrangler;
 import org.robolectric.internal.RobolectricTestRunnerInterface;
 import org.robolectric.res.OverlayResourceLoader;
 import org.robolectric.res.PackageResourceLoader;
@@ -71,7 +73,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
             }
         }));
 
-        sharedRobolectricContext = RobolectricContext.mostRecentRobolectricContext; // ick, race condition
+        sharedRobolectricContext = RobolectricContext.contextFor(getTestClass().getJavaClass());
 
         if (isBootstrapped(getClass())) {
             databaseMap = setupDatabaseMap(testClass, new SQLiteMap());
@@ -86,6 +88,21 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
         return sharedRobolectricContext;
     }
 
+    @Override
+    public void run(RunNotifier notifier) {
+        // test classes bootstrapped into the same context share its statics, so they mustn't run at the same time
+        synchronized (sharedRobolectricContext) {
+            Thread thread = Thread.currentThread();
+            ClassLoader originalClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(sharedRobolectricContext.getRobolectricClassLoader());
+            try {
+                super.run(notifier);
+            } finally {
+                thread.setContextClassLoader(originalClassLoader);
+            }
+        }
+    }
+
     protected static boolean isBootstrapped(Class<?> clazz) {
         return clazz.getClassLoader() instanceof InstrumentingClassLoader;
     }
@@ -199,7 +216,12 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     }
 
     protected void configureShadows(Method testMethod) { // todo: dedupe this/bindShadowClasses
-        Robolectric.bindDefaultShadowClasses();
+        // the class handler goes back to the default bindings on reset, so they only need binding once per context
+        ShadowWrangler shadowWrangler = Robolectric.getShadowWrangler();
+        if (!shadowWrangler.hasDefaultBindings()) {
+            Robolectric.bindDefaultShadowClasses();
+            shadowWrangler.rememberDefaultBindings();
+        }
         bindShadowClasses(testMethod);
     }
 
@@ -422,7 +444,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     protected ResourceLoader createAppResourceLoader(ResourceLoader systemResourceLoader, AndroidManifest appManifest) {
         List<PackageResourceLoader> appAndLibraryResourceLoaders = new ArrayList<PackageResourceLoader>();
         for (ResourcePath resourcePath : appManifest.getIncludedResourcePaths()) {
-            appAndLibraryResourceLoaders.add(new PackageResourceLoader(resourcePath));
+            appAndLibraryResourceLoaders.add(new PackageResourceLoader(resourcePath, getRobolectricContext().createResourceTableCache()));
         }
         OverlayResourceLoader overlayResourceLoader = new OverlayResourceLoader(appManifest.getPackageName(), appAndLibraryResourceLoaders);
 
@@ -433,7 +455,9 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     }
 
     protected PackageResourceLoader createResourceLoader(ResourcePath systemResourcePath) {
-        return new PackageResourceLoader(systemResourcePath);
+        RobolectricContext robolectricContext = getRobolectricContext();
+        int sdkVersion = robolectricContext.getAppManifest().getRealSdkVersion();
+        return new PackageResourceLoader(systemResourcePath, robolectricContext.createSystemResourceTableCache(sdkVersion));
     }
 
     /*
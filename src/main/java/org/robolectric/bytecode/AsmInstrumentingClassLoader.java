@@ -35,67 +35,131 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.objectweb.asm.Type.*;
 import static org.robolectric.util.Util.readBytes;
 import static org.robolectric.util.Util.reverse;
 
 public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes, InstrumentingClassLoader {
+    /**
+     * IMPORTANT -- increment this number when the bytecode generated for modified classes changes
+     * so cached instrumented classes can be invalidated.
+     */
+    public static final int INSTRUMENTOR_VERSION = 2;
+
     private static final String OBJECT_DESC = Type.getDescriptor(Object.class);
     private static final Type OBJECT_TYPE = getType(Object.class);
     private static final Type STRING_TYPE = getType(String.class);
+    private static final Type STRING_ARRAY_TYPE = getType(String[].class);
     private static final Type ROBOLECTRIC_INTERNALS_TYPE = Type.getType(RobolectricInternals.class);
 
     private static boolean debug = false;
 
     private final Setup setup;
     private final URLClassLoader urls;
-    private final Map<String, Class> classes = new HashMap<String, Class>();
+    private final URLClassLoader preinstrumentedUrls;
+    private final ConcurrentMap<String, Class> classes = new ConcurrentHashMap<String, Class>();
+    private final ConcurrentMap<String, Object> classLoadingLocks = new ConcurrentHashMap<String, Object>();
     private Set<Setup.MethodRef> methodsToIntercept;
     private final Map<String, String> classesToRemap;
+    private final InstrumentedClassCache instrumentedClassCache;
+
+    private static final String PARAM_TYPES_FIELD_PREFIX = "__robo_param_types_";
 
     public static final String DIRECT_OBJECT_MARKER_TYPE_DESC = Type.getObjectType(DirectObjectMarker.class.getName().replace('.', '/')).getDescriptor();
 
+    static {
+        registerAsParallelCapableIfPossible();
+    }
+
+    /**
+     * Lets the VM call {@link #loadClass(String)} without holding a lock on the whole loader, so independent classes
+     * can be instrumented on several threads at once. ClassLoader.registerAsParallelCapable() only exists on Java 7+;
+     * on Java 6 the VM keeps locking the loader and we're no worse off than before.
+     */
+    private static void registerAsParallelCapableIfPossible() {
+        try {
+            java.lang.reflect.Method method = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            // no problem, we're on Java 6
+        } catch (Exception e) {
+            // no problem, we'll just be loaded serially
+        }
+    }
+
     public AsmInstrumentingClassLoader(Setup setup, URL... urls) {
+        this(setup, null, urls);
+    }
+
+    public AsmInstrumentingClassLoader(Setup setup, InstrumentedClassCache instrumentedClassCache, URL... urls) {
         super(AsmInstrumentingClassLoader.class.getClassLoader());
         this.setup = setup;
-        this.urls = new URLClassLoader(urls, null);
+        this.instrumentedClassCache = instrumentedClassCache;
+        List<URL> plainUrls = new ArrayList<URL>();
+        List<URL> preinstrumentedUrls = new ArrayList<URL>();
+        for (URL url : urls) {
+            (JarInstrumenter.isPreinstrumentedFor(url, setup) ? preinstrumentedUrls : plainUrls).add(url);
+        }
+        this.urls = new URLClassLoader(plainUrls.toArray(new URL[plainUrls.size()]), null);
+        this.preinstrumentedUrls = preinstrumentedUrls.isEmpty() ? null
+                : new URLClassLoader(preinstrumentedUrls.toArray(new URL[preinstrumentedUrls.size()]), null);
         classesToRemap = convertToSlashes(setup.classNameTranslations());
         methodsToIntercept = convertToSlashes(setup.methodsToIntercept());
     }
 
     @Override
-    synchronized public Class loadClass(String name) throws ClassNotFoundException {
-        Class<?> theClass = classes.get(name);
-        if (theClass != null) {
-            if (theClass == MissingClassMarker.class) {
-                throw new ClassNotFoundException(name);
-            } else {
-                return theClass;
-            }
-        }
+    public Class loadClass(String name) throws ClassNotFoundException {
+        Class<?> theClass = loadedClass(name);
+        if (theClass != null) return theClass;
 
-        boolean shouldComeFromThisClassLoader = setup.shouldAcquire(name);
+        synchronized (classLoadingLockFor(name)) {
+            theClass = loadedClass(name);
+            if (theClass != null) return theClass;
 
-        try {
-            if (shouldComeFromThisClassLoader) {
-                theClass = findClass(name);
-            } else {
-                theClass = getParent().loadClass(name);
+            boolean shouldComeFromThisClassLoader = setup.shouldAcquire(name);
+
+            try {
+                if (shouldComeFromThisClassLoader) {
+                    theClass = findClass(name);
+                } else {
+                    theClass = getParent().loadClass(name);
+                }
+            } catch (ClassNotFoundException e) {
+                classes.put(name, MissingClassMarker.class);
+                throw e;
             }
-        } catch (ClassNotFoundException e) {
-            classes.put(name, MissingClassMarker.class);
-            throw e;
+
+            classes.put(name, theClass);
+            return theClass;
         }
+    }
 
-        classes.put(name, theClass);
+    private Class<?> loadedClass(String name) throws ClassNotFoundException {
+        Class<?> theClass = classes.get(name);
+        if (theClass == MissingClassMarker.class) {
+            throw new ClassNotFoundException(name);
+        }
         return theClass;
     }
 
+    private Object classLoadingLockFor(String name) {
+        Object lock = classLoadingLocks.get(name);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = classLoadingLocks.putIfAbsent(name, newLock);
+            if (lock == null) lock = newLock;
+        }
+        return lock;
+    }
+
     private static class MissingClassMarker {
     }
 
@@ -103,6 +167,19 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
     protected Class<?> findClass(final String className) throws ClassNotFoundException {
         if (setup.shouldAcquire(className)) {
             String classFilename = className.replace('.', '/') + ".class";
+            if (preinstrumentedUrls != null) {
+                InputStream preinstrumentedStream = preinstrumentedUrls.getResourceAsStream(classFilename);
+                if (preinstrumentedStream != null) {
+                    byte[] bytes;
+                    try {
+                        bytes = readBytes(preinstrumentedStream);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException("couldn't load " + className, e);
+                    }
+                    return defineClass(className, bytes, 0, bytes.length);
+                }
+            }
+
             InputStream classBytesStream = urls.getResourceAsStream(classFilename);
             if (classBytesStream == null) {
                 classBytesStream = getResourceAsStream(classFilename);
@@ -116,28 +193,23 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
                 throw new ClassNotFoundException("couldn't load " + className, e);
             }
 
-            final ClassReader classReader = new ClassReader(origClassBytes);
-            ClassNode classNode = new ClassNode() {
-                @Override
-                public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-                    desc = remapParamType(desc);
-                    return super.visitField(access, name, desc, signature, value);
+            String cacheKey = null;
+            if (instrumentedClassCache != null) {
+                cacheKey = instrumentedClassCache.keyFor(origClassBytes);
+                byte[] cachedBytes = instrumentedClassCache.getClassBytesFor(cacheKey, origClassBytes);
+                if (cachedBytes != null) {
+                    return defineClass(className, cachedBytes, 0, cachedBytes.length);
                 }
-
-                @Override
-                public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-                    return super.visitMethod(access, name, remapParams(desc), signature, exceptions);
-                }
-            };
-            classReader.accept(classNode, 0);
+            }
 
             try {
-                byte[] bytes;
-                AsmClassInfo classInfo = new AsmClassInfo(className, classNode);
-                if (setup.shouldInstrument(classInfo)) {
-                    bytes = getInstrumentedBytes(className, classNode, setup.containsStubs(classInfo));
-                } else {
-                    bytes = origClassBytes;
+                byte[] bytes = instrument(className, origClassBytes);
+                if (cacheKey != null) {
+                    if (bytes == origClassBytes) {
+                        instrumentedClassCache.addUninstrumentedClass(cacheKey);
+                    } else {
+                        instrumentedClassCache.addClass(cacheKey, bytes);
+                    }
                 }
                 return defineClass(className, bytes, 0, bytes.length);
             } catch (Exception e) {
@@ -149,6 +221,34 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
         }
     }
 
+    /**
+     * @return the bytes this loader would define for the given class, which are the original bytes themselves if
+     *         {@link Setup#shouldInstrument(ClassInfo)} says to leave it alone
+     */
+    public byte[] instrument(String className, byte[] origClassBytes) throws ClassNotFoundException {
+        final ClassReader classReader = new ClassReader(origClassBytes);
+        ClassNode classNode = new ClassNode() {
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                desc = remapParamType(desc);
+                return super.visitField(access, name, desc, signature, value);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                return super.visitMethod(access, name, remapParams(desc), signature, exceptions);
+            }
+        };
+        classReader.accept(classNode, 0);
+
+        AsmClassInfo classInfo = new AsmClassInfo(className, classNode);
+        if (setup.shouldInstrument(classInfo)) {
+            return getInstrumentedBytes(className, classNode, setup.containsStubs(classInfo));
+        } else {
+            return origClassBytes;
+        }
+    }
+
     private String remapParams(String desc) {
         StringBuilder buf = new StringBuilder();
         buf.append("(");
@@ -324,6 +424,8 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
         private final String internalClassName;
         private final String className;
         private final Type classType;
+        // param type name arrays are built once per class instead of on every call; keyed by argument descriptor
+        private final Map<String, String> paramTypesFields = new LinkedHashMap<String, String>();
 
         public ClassInstrumentor(ClassNode classNode, boolean containsStubs) {
             this.classNode = classNode;
@@ -396,6 +498,8 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
             }
             instrumentSpecial(foundMethods, "toString", "()Ljava/lang/String;");
 
+            initializeParamTypesFields();
+
 //            for (MethodNode method : (List<MethodNode>)classNode.methods) {
 //                System.out.println("method = " + method.name + method.desc);
 //            }
@@ -706,23 +810,58 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
             return methodNode;
         }
 
+        private String paramTypesFieldFor(MethodNode method) {
+            String argumentsDesc = method.desc.substring(0, method.desc.indexOf(')') + 1);
+            String fieldName = paramTypesFields.get(argumentsDesc);
+            if (fieldName == null) {
+                fieldName = PARAM_TYPES_FIELD_PREFIX + paramTypesFields.size() + "__";
+                paramTypesFields.put(argumentsDesc, fieldName);
+                classNode.fields.add(new FieldNode(ACC_PRIVATE | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC,
+                        fieldName, STRING_ARRAY_TYPE.getDescriptor(), null, null));
+            }
+            return fieldName;
+        }
+
+        // fill in the param type name arrays at the very start of <clinit>, so they're safely published before any
+        // instrumented method can run
+        private void initializeParamTypesFields() {
+            if (paramTypesFields.isEmpty()) return;
+
+            MethodNode clinit = null;
+            for (MethodNode method : (List<MethodNode>) classNode.methods) {
+                if (method.name.equals("<clinit>")) clinit = method;
+            }
+            if (clinit == null) {
+                clinit = new MethodNode(ACC_STATIC, "<clinit>", "()V", null, null);
+                clinit.instructions.add(new InsnNode(RETURN));
+                classNode.methods.add(clinit);
+            }
+
+            MethodNode initializer = new MethodNode(ACC_STATIC, "<clinit>", "()V", null, null);
+            MyGenerator m = new MyGenerator(initializer);
+            for (Map.Entry<String, String> entry : paramTypesFields.entrySet()) {
+                Type[] argumentTypes = Type.getArgumentTypes(entry.getKey() + "V");
+                m.push(argumentTypes.length);
+                m.newArray(STRING_TYPE);                               // String[n]{nulls}
+                for (int i = 0; i < argumentTypes.length; i++) {
+                    m.dup();
+                    m.push(i);
+                    m.push(argumentTypes[i].getClassName());
+                    m.arrayStore(STRING_TYPE);
+                }
+                m.putStatic(classType, entry.getValue(), STRING_ARRAY_TYPE);
+            }
+            clinit.instructions.insert(initializer.instructions);
+        }
+
         private void generateCallToClassHandler(MethodNode method, String originalMethodName, MyGenerator m) {
             // prepare for call to classHandler.methodInvoked()
             m.push(classType);                                         // my class
             m.push(originalMethodName);                                // my class, method name
             m.loadThisOrNull();                                        // my class, method name, this
-//
-//            // load param types
-            Type[] argumentTypes = Type.getArgumentTypes(method.desc);
-            m.push(argumentTypes.length);
-            m.newArray(STRING_TYPE);                                   // my class, method name, this, String[n]{nulls}
-            for (int i = 0; i < argumentTypes.length; i++) {
-                Type argumentType = argumentTypes[i];
-                m.dup();
-                m.push(i);
-                m.push(argumentType.getClassName());
-                m.arrayStore(STRING_TYPE);
-            }
+
+            // load param types
+            m.getStatic(classType, paramTypesFieldFor(method), STRING_ARRAY_TYPE);
             // my class, method name, this, String[n]{param class names}
 
             m.loadArgArray();
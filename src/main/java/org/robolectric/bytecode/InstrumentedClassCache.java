@@ -0,0 +1,100 @@
+package org.robolectric.bytecode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.robolectric.util.Util.readBytes;
+import static org.robolectric.util.Util.sha1Hex;
+
+/**
+ * Content-addressed on-disk cache of the bytes produced by {@link AsmInstrumentingClassLoader}.
+ *
+ * Entries are keyed by a hash of the original class bytes and live under a directory named for the instrumentor
+ * version and the {@link Setup#getInstrumentationFingerprint()}, so changing either just starts a fresh cache.
+ * Entries are written to a temp file and renamed into place, so concurrent JVMs never see a partially-written class;
+ * if two JVMs instrument the same class at once, the last rename wins and both wrote identical bytes anyway.
+ *
+ * A zero-length entry records that the class was looked at and left uninstrumented.
+ */
+public class InstrumentedClassCache {
+    private static final byte[] NOT_INSTRUMENTED = new byte[0];
+
+    private final File cacheDir;
+
+    public InstrumentedClassCache(File baseDir, Setup setup, int instrumentorVersion) {
+        this.cacheDir = new File(new File(baseDir, "v" + instrumentorVersion), setup.getInstrumentationFingerprint());
+    }
+
+    /**
+     * @return the cached instrumented bytes, the original bytes if the class was cached as uninstrumented,
+     *         or null if the class isn't in the cache yet
+     */
+    public byte[] getClassBytesFor(String key, byte[] origClassBytes) {
+        File file = fileFor(key);
+        if (!file.isFile()) return null;
+
+        try {
+            byte[] bytes = readBytes(new FileInputStream(file));
+            if (bytes.length == 0) return origClassBytes;
+            if (!isClassFile(bytes)) {
+                file.delete();
+                return null;
+            }
+            return bytes;
+        } catch (IOException e) {
+            return null; // somebody else's problem; we'll just instrument it again
+        }
+    }
+
+    public void addClass(String key, byte[] instrumentedClassBytes) {
+        publish(fileFor(key), instrumentedClassBytes);
+    }
+
+    public void addUninstrumentedClass(String key) {
+        publish(fileFor(key), NOT_INSTRUMENTED);
+    }
+
+    public String keyFor(byte[] origClassBytes) {
+        return sha1Hex(origClassBytes);
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    private File fileFor(String key) {
+        return new File(new File(cacheDir, key.substring(0, 2)), key.substring(2) + ".class");
+    }
+
+    private void publish(File file, byte[] bytes) {
+        File dir = file.getParentFile();
+        dir.mkdirs();
+
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+
+            if (!tmpFile.renameTo(file)) {
+                // on some platforms rename won't replace an existing file; another JVM already published it
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            // not being able to cache isn't fatal
+            if (tmpFile != null) tmpFile.delete();
+        }
+    }
+
+    private static boolean isClassFile(byte[] bytes) {
+        return bytes.length > 4
+                && (bytes[0] & 0xff) == 0xca && (bytes[1] & 0xff) == 0xfe
+                && (bytes[2] & 0xff) == 0xba && (bytes[3] & 0xff) == 0xbe;
+    }
+}
@@ -0,0 +1,181 @@
+package org.robolectric.bytecode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * Instruments jars ahead of time, so test JVMs can load Android classes without instrumenting them first.
+ *
+ * <pre>
+ *   java -cp ... org.robolectric.bytecode.JarInstrumenter [-setup com.example.MySetup] out.jar android-base.jar android-luni.jar ...
+ * </pre>
+ * or from Maven, <code>mvn package -Ppreinstrument</code>.
+ *
+ * Every class the {@link Setup} acquires is run through {@link AsmInstrumentingClassLoader#instrument(String, byte[])};
+ * everything else is copied as-is. The output jar's manifest records the instrumentor version and
+ * {@link Setup#getInstrumentationFingerprint()}, and {@link AsmInstrumentingClassLoader} defines classes from any jar
+ * on its path with a matching fingerprint directly (pass it in {@code robolectric.dependency.jars} instead of the jars
+ * it was built from). A jar built for a different Setup or Robolectric version is an error rather than being
+ * silently instrumented twice.
+ */
+public class JarInstrumenter {
+    public static final String FINGERPRINT_ATTRIBUTE = "Robolectric-Instrumentation-Fingerprint";
+
+    private final Setup setup;
+
+    public JarInstrumenter(Setup setup) {
+        this.setup = setup;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Setup setup = new Setup();
+        int i = 0;
+        if (args.length > 1 && args[0].equals("-setup")) {
+            setup = (Setup) Class.forName(args[1]).getConstructor().newInstance();
+            i = 2;
+        }
+        if (args.length - i < 2) {
+            System.err.println("usage: " + JarInstrumenter.class.getName() + " [-setup <Setup subclass>] <output jar> <input jar>...");
+            System.exit(1);
+        }
+
+        File outputJar = new File(args[i++]);
+        File[] inputJars = new File[args.length - i];
+        for (int j = 0; j < inputJars.length; j++) {
+            inputJars[j] = new File(args[i + j]);
+        }
+        new JarInstrumenter(setup).instrument(outputJar, inputJars);
+    }
+
+    public static String fingerprintFor(Setup setup) {
+        return AsmInstrumentingClassLoader.INSTRUMENTOR_VERSION + "-" + setup.getInstrumentationFingerprint();
+    }
+
+    /**
+     * Writes the entries of all the input jars, instrumented, to the output jar. Where the input jars overlap, the
+     * first one wins, as it would on a classpath.
+     */
+    public void instrument(File outputJar, File... inputJars) throws IOException {
+        URL[] urls = new URL[inputJars.length];
+        for (int i = 0; i < inputJars.length; i++) {
+            urls[i] = inputJars[i].toURI().toURL();
+        }
+        AsmInstrumentingClassLoader instrumentingClassLoader = new AsmInstrumentingClassLoader(setup, urls);
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(FINGERPRINT_ATTRIBUTE, fingerprintFor(setup));
+
+        File outputDir = outputJar.getAbsoluteFile().getParentFile();
+        outputDir.mkdirs();
+        File tmpFile = File.createTempFile(outputJar.getName(), ".tmp", outputDir);
+        try {
+            JarOutputStream out = new JarOutputStream(new FileOutputStream(tmpFile), manifest);
+            try {
+                Set<String> written = new HashSet<String>();
+                written.add(JarFile.MANIFEST_NAME);
+                for (File inputJar : inputJars) {
+                    copyEntries(instrumentingClassLoader, inputJar, out, written);
+                }
+            } finally {
+                out.close();
+            }
+
+            if (!tmpFile.renameTo(outputJar)) {
+                outputJar.delete();
+                if (!tmpFile.renameTo(outputJar)) throw new IOException("couldn't write " + outputJar);
+            }
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+    private void copyEntries(AsmInstrumentingClassLoader instrumentingClassLoader, File inputJar, JarOutputStream out, Set<String> written) throws IOException {
+        JarFile jarFile = new JarFile(inputJar);
+        try {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (isSignature(name) || !written.add(name)) continue;
+
+                out.putNextEntry(new JarEntry(name));
+                if (!entry.isDirectory()) {
+                    InputStream in = jarFile.getInputStream(entry);
+                    byte[] bytes;
+                    try {
+                        bytes = readBytes(in);
+                    } finally {
+                        in.close();
+                    }
+
+                    if (name.endsWith(".class")) {
+                        String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                        if (setup.shouldAcquire(className)) {
+                            try {
+                                bytes = instrumentingClassLoader.instrument(className, bytes);
+                            } catch (Exception e) {
+                                throw new RuntimeException("couldn't instrument " + className, e);
+                            }
+                        }
+                    }
+                    out.write(bytes);
+                }
+                out.closeEntry();
+            }
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    // the original signatures won't match the instrumented classes
+    private static boolean isSignature(String name) {
+        String upperName = name.toUpperCase();
+        return upperName.startsWith("META-INF/")
+                && (upperName.endsWith(".SF") || upperName.endsWith(".RSA") || upperName.endsWith(".DSA"));
+    }
+
+    /**
+     * @return true if the URL names a jar written by this tool for the given Setup
+     * @throws IllegalStateException if it was written for a different Setup or instrumentor version
+     */
+    public static boolean isPreinstrumentedFor(URL url, Setup setup) {
+        if (!"file".equals(url.getProtocol()) || !url.getPath().endsWith(".jar")) return false;
+        File file = new File(url.getPath());
+        if (!file.isFile()) return false;
+
+        String fingerprint;
+        try {
+            JarFile jarFile = new JarFile(file);
+            try {
+                Manifest manifest = jarFile.getManifest();
+                if (manifest == null) return false;
+                fingerprint = manifest.getMainAttributes().getValue(FINGERPRINT_ATTRIBUTE);
+            } finally {
+                jarFile.close();
+            }
+        } catch (IOException e) {
+            return false; // no problem, it'll be read like any other jar
+        }
+
+        if (fingerprint == null) return false;
+        if (!fingerprint.equals(fingerprintFor(setup))) {
+            throw new IllegalStateException(file + " was instrumented by a different version of Robolectric or for a different "
+                    + setup.getClass().getName() + "; rebuild it with " + JarInstrumenter.class.getName());
+        }
+        return true;
+    }
+}
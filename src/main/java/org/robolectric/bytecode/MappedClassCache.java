@@ -0,0 +1,200 @@
+package org.robolectric.bytecode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link ClassCache} backed by an append-only data file which is memory-mapped at startup, plus a small index file
+ * mapping class names to offsets in it. Only the index is read eagerly; class bytes are paged in as they're asked for.
+ *
+ * New classes are appended to both files as soon as they're added (under a file lock, so forks can share a cache),
+ * rather than rewriting everything at JVM exit, and are read back from the data file like any others, mapping it again
+ * once it's grown past the old mapping, so their bytes aren't kept on the heap. The cache version is part of the file names, so an old cache is
+ * simply ignored rather than truncated out from under another JVM which may still have it mapped. The exception is
+ * version -1, which means "always start fresh" (handy while working on instrumentation): its files are deleted
+ * whenever a cache is created.
+ */
+public class MappedClassCache implements ClassCache {
+    private static final int MAGIC = 0x524f424f;
+    private static final int END_OF_ENTRY = 0x454e5452;
+    private static final int HEADER_SIZE = 4;
+    private static final int ALWAYS_START_FRESH = -1;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final Map<String, Entry> index = new HashMap<String, Entry>();
+    private ByteBuffer mappedData;
+
+    public MappedClassCache(String classCachePath, int expectedCacheVersion) {
+        dataFile = new File(classCachePath + "-v" + expectedCacheVersion + ".dat");
+        indexFile = new File(classCachePath + "-v" + expectedCacheVersion + ".idx");
+
+        if (expectedCacheVersion == ALWAYS_START_FRESH) {
+            indexFile.delete();
+            dataFile.delete();
+        }
+
+        try {
+            readIndex();
+            if (!index.isEmpty()) mapData();
+        } catch (IOException e) {
+            // no problem, we'll just start from scratch
+            index.clear();
+            mappedData = null;
+        }
+    }
+
+    @Override
+    public synchronized byte[] getClassBytesFor(String name) {
+        Entry entry = index.get(name);
+        if (entry == null) return null;
+
+        if (mappedData == null || entry.offset + entry.length > mappedData.limit()) {
+            try {
+                mapData(); // it was added since we last mapped the data file
+            } catch (IOException e) {
+                return null; // no problem, it'll just get instrumented again
+            }
+        }
+
+        byte[] classBytes = new byte[entry.length];
+        ByteBuffer slice = mappedData.duplicate();
+        slice.position((int) entry.offset);
+        slice.get(classBytes);
+        return classBytes;
+    }
+
+    @Override
+    public boolean isWriting() {
+        return false;
+    }
+
+    @Override
+    public synchronized void addClass(String className, byte[] classBytes) {
+        if (index.containsKey(className)) return;
+
+        try {
+            long offset = append(className, classBytes);
+            index.put(className, new Entry(offset, classBytes.length));
+        } catch (IOException e) {
+            // no problem, it'll just get instrumented again next time
+        }
+    }
+
+    private void readIndex() throws IOException {
+        if (!indexFile.exists() || !dataFile.exists()) return;
+
+        long dataLength = dataFile.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != MAGIC) return;
+
+            while (true) {
+                String className;
+                long offset;
+                int length;
+                try {
+                    className = in.readUTF();
+                    offset = in.readLong();
+                    length = in.readInt();
+                    if (in.readInt() != END_OF_ENTRY) break;
+                } catch (EOFException e) {
+                    break; // another JVM is halfway through appending
+                }
+
+                if (offset + length > dataLength) break;
+                index.put(className, new Entry(offset, length));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void mapData() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+        try {
+            // the mapping stays valid after the file is closed
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            mappedData = buffer.asReadOnlyBuffer();
+        } finally {
+            file.close();
+        }
+    }
+
+    private long append(String className, byte[] classBytes) throws IOException {
+        dataFile.getParentFile().mkdirs();
+
+        RandomAccessFile data = new RandomAccessFile(dataFile, "rw");
+        try {
+            FileLock lock = data.getChannel().lock();
+            try {
+                long offset = data.length();
+                data.seek(offset);
+                data.write(classBytes);
+                appendIndexEntry(className, offset, classBytes.length);
+                return offset;
+            } finally {
+                lock.release();
+            }
+        } finally {
+            data.close();
+        }
+    }
+
+    private void appendIndexEntry(String className, long offset, int length) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream entry = new DataOutputStream(buf);
+        entry.writeUTF(className);
+        entry.writeLong(offset);
+        entry.writeInt(length);
+        entry.writeInt(END_OF_ENTRY);
+
+        RandomAccessFile indexOut = new RandomAccessFile(indexFile, "rw");
+        try {
+            long indexLength = indexOut.length();
+            if (!isIntact(indexOut, indexLength)) {
+                // a writer died partway through an entry; drop the index rather than let later entries be misread.
+                // the orphaned class bytes just become dead space in the data file.
+                indexOut.setLength(0);
+                indexOut.writeInt(MAGIC);
+                indexLength = HEADER_SIZE;
+            }
+            indexOut.seek(indexLength);
+            indexOut.write(buf.toByteArray());
+        } finally {
+            indexOut.close();
+        }
+    }
+
+    private boolean isIntact(RandomAccessFile indexFile, long indexLength) throws IOException {
+        if (indexLength < HEADER_SIZE) return false;
+        indexFile.seek(0);
+        if (indexFile.readInt() != MAGIC) return false;
+        if (indexLength == HEADER_SIZE) return true;
+        indexFile.seek(indexLength - 4);
+        return indexFile.readInt() == END_OF_ENTRY;
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        private Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
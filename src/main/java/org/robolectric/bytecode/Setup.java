@@ -14,6 +14,7 @@ import org.robolectric.internal.RobolectricTestRunnerInterface;
 import org.robolectric.res.ResourcePath;
 import org.robolectric.util.DatabaseConfig;
 import org.robolectric.util.I18nException;
+import org.robolectric.util.Util;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -22,6 +23,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import static java.util.Arrays.asList;
 
@@ -165,6 +168,26 @@ public class Setup {
         return map;
     }
 
+    /**
+     * Identifies the parts of this setup which affect instrumented bytecode, so {@link InstrumentedClassCache} can
+     * tell when previously-instrumented classes are stale. If you override {@link #shouldInstrument(ClassInfo)} or
+     * {@link #containsStubs(ClassInfo)} in a way that changes over time, override this too.
+     */
+    public String getInstrumentationFingerprint() {
+        StringBuilder buf = new StringBuilder(getClass().getName());
+        for (Map.Entry<String, String> entry : new TreeMap<String, String>(classNameTranslations()).entrySet()) {
+            buf.append('\n').append(entry.getKey()).append("->").append(entry.getValue());
+        }
+        TreeSet<String> methodRefs = new TreeSet<String>();
+        for (MethodRef methodRef : methodsToIntercept()) {
+            methodRefs.add(methodRef.className + "." + methodRef.methodName);
+        }
+        for (String methodRef : methodRefs) {
+            buf.append('\n').append(methodRef);
+        }
+        return Util.sha1Hex(buf.toString().getBytes());
+    }
+
     public static class FakeClass {
         public static class FakeInnerClass {}
     }
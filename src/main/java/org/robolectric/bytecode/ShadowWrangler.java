@@ -15,9 +15,10 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Arrays.asList;
 
@@ -30,14 +31,18 @@ public class ShadowWrangler implements ClassHandler {
     public boolean debug = false;
     private boolean strictI18n = false;
 
-    private final Map<InvocationProfile, InvocationPlan> invocationPlans = new LinkedHashMap<InvocationProfile, InvocationPlan>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<InvocationProfile, InvocationPlan> eldest) {
-            return size() > 500;
-        }
-    };
+    // plans are only thrown away when the shadow bindings they were built from change, not on every reset
+    private final ConcurrentHashMap<InvocationProfile, InvocationPlan> invocationPlans = new ConcurrentHashMap<InvocationProfile, InvocationPlan>();
+    private Map<String, ShadowConfig> bindingsForInvocationPlans = new HashMap<String, ShadowConfig>();
+    private volatile boolean bindingsChanged = false;
+    private final AtomicLong invocationPlanHits = new AtomicLong();
+    private final AtomicLong invocationPlanMisses = new AtomicLong();
+    private final AtomicLong invocationPlanEvictions = new AtomicLong();
+
     private final Map<Class, MetaShadow> metaShadowMap = new HashMap<Class, MetaShadow>();
     private Map<String, ShadowConfig> shadowClassMap = new HashMap<String, ShadowConfig>();
+    private Map<String, ShadowConfig> defaultShadowClassMap;
+    private boolean hasOnlyDefaultBindings;
     private boolean logMissingShadowMethods = false;
     private static ThreadLocal<Info> infos = new ThreadLocal<Info>() {
         @Override
@@ -48,6 +53,7 @@ public class ShadowWrangler implements ClassHandler {
 
     private static class Info {
         private int callDepth = 0;
+        private final InvocationProfile lookupProfile = new InvocationProfile();
     }
 
     static class ShadowConfig {
@@ -58,6 +64,26 @@ public class ShadowWrangler implements ClassHandler {
             this.callThroughByDefault = callThroughByDefault;
             this.shadowClassName = shadowClassName;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ShadowConfig that = (ShadowConfig) o;
+
+            if (callThroughByDefault != that.callThroughByDefault) return false;
+            if (!shadowClassName.equals(that.shadowClassName)) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = shadowClassName.hashCode();
+            result = 31 * result + (callThroughByDefault ? 1 : 0);
+            return result;
+        }
     }
 
     public ShadowWrangler(Setup setup) {
@@ -69,9 +95,33 @@ public class ShadowWrangler implements ClassHandler {
         this.strictI18n = strictI18n;
     }
 
+    /**
+     * Goes back to the bindings recorded by {@link #rememberDefaultBindings()}, or to none if there aren't any.
+     */
     @Override
     public void reset() {
-        shadowClassMap.clear();
+        if (defaultShadowClassMap == null) {
+            shadowClassMap.clear();
+            bindingsChanged = true;
+        } else if (!hasOnlyDefaultBindings) {
+            shadowClassMap.clear();
+            shadowClassMap.putAll(defaultShadowClassMap);
+            hasOnlyDefaultBindings = true;
+            bindingsChanged = true;
+        }
+    }
+
+    /**
+     * Records the current bindings as the ones {@link #reset()} goes back to, so they don't need to be bound again
+     * before every test.
+     */
+    public void rememberDefaultBindings() {
+        defaultShadowClassMap = new HashMap<String, ShadowConfig>(shadowClassMap);
+        hasOnlyDefaultBindings = true;
+    }
+
+    public boolean hasDefaultBindings() {
+        return defaultShadowClassMap != null;
     }
 
     @Override
@@ -108,7 +158,11 @@ public class ShadowWrangler implements ClassHandler {
     }
 
     public void bindShadowClass(String realClassName, String shadowClassName, boolean callThroughByDefault) {
-        shadowClassMap.put(realClassName, new ShadowConfig(shadowClassName, callThroughByDefault));
+        ShadowConfig shadowConfig = new ShadowConfig(shadowClassName, callThroughByDefault);
+        if (!shadowConfig.equals(shadowClassMap.put(realClassName, shadowConfig))) {
+            hasOnlyDefaultBindings = false;
+            bindingsChanged = true;
+        }
         if (debug) System.out.println("shadow " + realClassName + " with " + shadowClassName);
     }
 
@@ -118,15 +172,26 @@ public class ShadowWrangler implements ClassHandler {
         return buf.toString();
     }
 
-    class InvocationProfile {
-        private final Class clazz;
-        private final Class shadowClass;
-        private final String methodName;
-        private final boolean isStatic;
-        private final String[] paramTypes;
-        private final int hashCode;
+    /**
+     * Key for {@link #invocationPlans}. Each thread keeps a mutable one around for lookups so the hot path doesn't
+     * allocate; it's only copied when a new plan has to be stored.
+     */
+    static class InvocationProfile {
+        private Class clazz;
+        private Class shadowClass;
+        private String methodName;
+        private boolean isStatic;
+        private String[] paramTypes;
+        private int hashCode;
+
+        InvocationProfile() {
+        }
 
         InvocationProfile(Class clazz, Class shadowClass, String methodName, boolean aStatic, String[] paramTypes) {
+            set(clazz, shadowClass, methodName, aStatic, paramTypes);
+        }
+
+        InvocationProfile set(Class clazz, Class shadowClass, String methodName, boolean aStatic, String[] paramTypes) {
             this.clazz = clazz;
             this.shadowClass = shadowClass;
             this.methodName = methodName;
@@ -140,6 +205,13 @@ public class ShadowWrangler implements ClassHandler {
             result = 31 * result + (isStatic ? 1 : 0);
             result = 31 * result + Arrays.hashCode(paramTypes);
             hashCode = result;
+            return this;
+        }
+
+        // instrumented classes pass the same param types array on every call, so the copy keeps it (nobody writes to
+        // it) and later lookups can match it by identity
+        InvocationProfile copy() {
+            return new InvocationProfile(clazz, shadowClass, methodName, isStatic, paramTypes);
         }
 
         @Override
@@ -149,10 +221,11 @@ public class ShadowWrangler implements ClassHandler {
 
             InvocationProfile that = (InvocationProfile) o;
 
+            if (hashCode != that.hashCode) return false;
             if (isStatic != that.isStatic) return false;
             if (!clazz.equals(that.clazz)) return false;
             if (!methodName.equals(that.methodName)) return false;
-            if (!Arrays.equals(paramTypes, that.paramTypes)) return false;
+            if (paramTypes != that.paramTypes && !Arrays.equals(paramTypes, that.paramTypes)) return false;
             if (shadowClass != null ? !shadowClass.equals(that.shadowClass) : that.shadowClass != null) return false;
 
             return true;
@@ -170,7 +243,7 @@ public class ShadowWrangler implements ClassHandler {
         if (info.callDepth > MAX_CALL_DEPTH) throw stripStackTrace(new StackOverflowError("too deep!"));
         try {
             info.callDepth++;
-            InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, instance, paramTypes);
+            InvocationPlan invocationPlan = getInvocationPlan(info, clazz, methodName, instance, paramTypes);
             try {
                 boolean hasShadowImplementation = invocationPlan.hasShadowImplementation();
                 if (debug) {
@@ -212,18 +285,47 @@ public class ShadowWrangler implements ClassHandler {
         }
     }
 
-    private InvocationPlan getInvocationPlan(Class clazz, String methodName, Object instance, String[] paramTypes) {
+    private InvocationPlan getInvocationPlan(Info info, Class clazz, String methodName, Object instance, String[] paramTypes) {
+        if (bindingsChanged) discardStaleInvocationPlans();
+
         boolean isStatic = instance == null;
         Class shadowClass = isStatic ? findDirectShadowClass(clazz) : shadowOf(instance).getClass();
-        InvocationProfile invocationProfile = new InvocationProfile(clazz, shadowClass, methodName, isStatic, paramTypes);
-        synchronized (invocationPlans) {
-            InvocationPlan invocationPlan = invocationPlans.get(invocationProfile);
-            if (invocationPlan == null) {
-                invocationPlan = new InvocationPlan(invocationProfile);
-                invocationPlans.put(invocationProfile, invocationPlan);
-            }
+        InvocationProfile lookupProfile = info.lookupProfile.set(clazz, shadowClass, methodName, isStatic, paramTypes);
+        InvocationPlan invocationPlan = invocationPlans.get(lookupProfile);
+        if (invocationPlan != null) {
+            invocationPlanHits.incrementAndGet();
             return invocationPlan;
         }
+
+        invocationPlanMisses.incrementAndGet();
+        InvocationProfile invocationProfile = lookupProfile.copy();
+        invocationPlan = new InvocationPlan(invocationProfile);
+        InvocationPlan existingPlan = invocationPlans.putIfAbsent(invocationProfile, invocationPlan);
+        return existingPlan == null ? invocationPlan : existingPlan;
+    }
+
+    private synchronized void discardStaleInvocationPlans() {
+        if (!bindingsChanged) return;
+        bindingsChanged = false;
+
+        // tests usually rebind exactly the same shadows after each reset, in which case every plan is still good
+        if (!shadowClassMap.equals(bindingsForInvocationPlans)) {
+            invocationPlanEvictions.addAndGet(invocationPlans.size());
+            invocationPlans.clear();
+            bindingsForInvocationPlans = new HashMap<String, ShadowConfig>(shadowClassMap);
+        }
+    }
+
+    public long getInvocationPlanHits() {
+        return invocationPlanHits.get();
+    }
+
+    public long getInvocationPlanMisses() {
+        return invocationPlanMisses.get();
+    }
+
+    public long getInvocationPlanEvictions() {
+        return invocationPlanEvictions.get();
     }
 
     @Override
@@ -0,0 +1,155 @@
+package org.robolectric.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * The wire format spoken between {@link DaemonTestRunner} and {@link RobolectricDaemon}: the daemon's token and a
+ * command from the client, then a stream of test events from the daemon ending in {@link #DONE}.
+ */
+class DaemonProtocol {
+    static final String PORT_PROPERTY = "robolectric.daemon.port";
+    static final String SERVER_PROPERTY = "robolectric.daemon.server";
+    static final String TOKEN_DIRECTORY_PROPERTY = "robolectric.daemon.tokenDirectory";
+    static final int DEFAULT_PORT = 7799;
+
+    // commands
+    static final String RUN = "run";
+    static final String RELOAD = "reload";
+    static final String STOP = "stop";
+
+    // events
+    static final String STARTED = "started";
+    static final String FAILED = "failed";
+    static final String ASSUMPTION_FAILED = "assumptionFailed";
+    static final String IGNORED = "ignored";
+    static final String FINISHED = "finished";
+    static final String ERROR = "error";
+    static final String DONE = "done";
+
+    private static final int MAX_STRING_LENGTH = 16 * 1024; // writeUTF can't handle more than 64k bytes
+
+    /**
+     * The file holding the token of the daemon on the given port, in {@code ~/.robolectric} unless the
+     * {@code robolectric.daemon.tokenDirectory} system property says otherwise.
+     */
+    static File tokenFileFor(int port) {
+        String tokenDirectory = System.getProperty(TOKEN_DIRECTORY_PROPERTY);
+        File dir = tokenDirectory == null ? new File(System.getProperty("user.home"), ".robolectric") : new File(tokenDirectory);
+        return new File(dir, "daemon-" + port + ".token");
+    }
+
+    /**
+     * Writes a new random token to a file only the current user can read.
+     */
+    static String createToken(File tokenFile) throws IOException {
+        String token = new BigInteger(130, new SecureRandom()).toString(32);
+
+        tokenFile.getParentFile().mkdirs();
+        tokenFile.delete();
+        if (!tokenFile.createNewFile()) throw new IOException("couldn't create " + tokenFile);
+        // lock it down before the token goes in
+        if (!(tokenFile.setReadable(false, false) && tokenFile.setReadable(true, true)
+                && tokenFile.setWritable(false, false) && tokenFile.setWritable(true, true))) {
+            tokenFile.delete();
+            throw new IOException("couldn't make " + tokenFile + " private");
+        }
+
+        FileOutputStream out = new FileOutputStream(tokenFile);
+        try {
+            out.write(token.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return token;
+    }
+
+    /**
+     * @return the token in the file, or null if it can't be read
+     */
+    static String readToken(File tokenFile) {
+        try {
+            byte[] bytes = new byte[(int) tokenFile.length()];
+            DataInputStream in = new DataInputStream(new FileInputStream(tokenFile));
+            try {
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
+            return new String(bytes, "UTF-8");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static boolean tokensMatch(String expected, String actual) throws IOException {
+        // compare every byte, so how long the check takes doesn't give the token away
+        return MessageDigest.isEqual(expected.getBytes("UTF-8"), actual.getBytes("UTF-8"));
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) s = "";
+        if (s.length() > MAX_STRING_LENGTH) s = s.substring(0, MAX_STRING_LENGTH) + "...";
+        out.writeUTF(s);
+    }
+
+    static void writeThrowable(DataOutputStream out, Throwable throwable) throws IOException {
+        writeString(out, throwable.getClass().getName());
+        writeString(out, throwable.getMessage());
+        StackTraceElement[] stackTrace = throwable.getStackTrace();
+        out.writeInt(stackTrace.length);
+        for (StackTraceElement element : stackTrace) {
+            writeString(out, element.getClassName());
+            writeString(out, element.getMethodName());
+            writeString(out, element.getFileName());
+            out.writeInt(element.getLineNumber());
+        }
+    }
+
+    static Throwable readThrowable(DataInputStream in) throws IOException {
+        String className = in.readUTF();
+        String message = in.readUTF();
+        StackTraceElement[] stackTrace = new StackTraceElement[in.readInt()];
+        for (int i = 0; i < stackTrace.length; i++) {
+            String declaringClass = in.readUTF();
+            String methodName = in.readUTF();
+            String fileName = in.readUTF();
+            int lineNumber = in.readInt();
+            stackTrace[i] = new StackTraceElement(declaringClass, methodName, fileName.length() == 0 ? null : fileName, lineNumber);
+        }
+
+        RemoteTestFailure failure = new RemoteTestFailure(className, message);
+        failure.setStackTrace(stackTrace);
+        return failure;
+    }
+
+    /**
+     * Stands in for an exception thrown in the daemon, which may not even be loadable here.
+     */
+    static class RemoteTestFailure extends AssertionError {
+        private static final long serialVersionUID = 1L;
+
+        private final String remoteClassName;
+
+        RemoteTestFailure(String remoteClassName, String message) {
+            super(message.length() == 0 ? remoteClassName : remoteClassName + ": " + message);
+            this.remoteClassName = remoteClassName;
+        }
+
+        public String getRemoteClassName() {
+            return remoteClassName;
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+    }
+}
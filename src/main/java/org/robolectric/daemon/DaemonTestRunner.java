@@ -0,0 +1,201 @@
+package org.robolectric.daemon;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.TestClass;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.robolectric.daemon.DaemonProtocol.*;
+
+/**
+ * Runs a test class in a warm {@link RobolectricDaemon} if one is listening on the port named by the
+ * {@code robolectric.daemon.port} system property and its token can be read, and otherwise runs it right here with its
+ * {@link RunLocallyWith} runner (by default {@link RobolectricTestRunner}).
+ *
+ * <pre>
+ *   &#064;RunWith(DaemonTestRunner.class)
+ *   public class MyActivityTest { ... }
+ * </pre>
+ */
+public class DaemonTestRunner extends Runner {
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Inherited
+    public @interface RunLocallyWith {
+        Class<? extends Runner> value();
+    }
+
+    private final Class<?> testClass;
+    private final int port;
+    private Description description;
+    private Runner localRunner;
+
+    public DaemonTestRunner(Class<?> testClass) {
+        this(testClass, configuredPort());
+    }
+
+    /**
+     * @param port the daemon's port, or -1 to always run locally
+     */
+    public DaemonTestRunner(Class<?> testClass, int port) {
+        this.testClass = testClass;
+        this.port = Boolean.getBoolean(SERVER_PROPERTY) ? -1 : port;
+    }
+
+    @Override
+    public Description getDescription() {
+        if (localRunner != null) return localRunner.getDescription();
+
+        if (description == null) {
+            // don't build the local runner just to describe ourselves; that's the cold start we're trying to avoid
+            description = Description.createSuiteDescription(testClass.getName(), testClass.getAnnotations());
+            for (FrameworkMethod method : new TestClass(testClass).getAnnotatedMethods(Test.class)) {
+                description.addChild(Description.createTestDescription(testClass, method.getName(), method.getAnnotations()));
+            }
+        }
+        return description;
+    }
+
+    @Override
+    public void run(RunNotifier notifier) {
+        String token = port < 0 ? null : readToken(tokenFileFor(port));
+        Socket socket = token == null ? null : connect();
+        if (socket == null) {
+            runLocally(notifier);
+            return;
+        }
+
+        try {
+            try {
+                runRemotely(socket, token, notifier);
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            notifier.fireTestFailure(new Failure(getDescription(), e));
+        }
+    }
+
+    /**
+     * Asks the daemon on the given port to forget its contexts, so classes recompiled since it started are
+     * picked up by the next run.
+     */
+    public static void reload(int port) throws IOException {
+        sendCommand(port, RELOAD);
+    }
+
+    public static void stop(int port) throws IOException {
+        sendCommand(port, STOP);
+    }
+
+    private static void sendCommand(int port, String command) throws IOException {
+        String token = readToken(tokenFileFor(port));
+        if (token == null) throw new IOException("couldn't read the token of the daemon on port " + port);
+
+        Socket socket = new Socket(InetAddress.getByName(null), port);
+        try {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(token);
+            out.writeUTF(command);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (!in.readUTF().equals(DONE)) {
+                in.readUTF();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void runRemotely(Socket socket, String token, RunNotifier notifier) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeUTF(token);
+        out.writeUTF(RUN);
+        out.writeUTF(testClass.getName());
+        out.flush();
+
+        Map<String, Description> descriptionsByName = new HashMap<String, Description>();
+        for (Description child : getDescription().getChildren()) {
+            descriptionsByName.put(child.getDisplayName(), child);
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        while (true) {
+            String event = in.readUTF();
+            if (event.equals(DONE)) {
+                return;
+            } else if (event.equals(ERROR)) {
+                notifier.fireTestFailure(new Failure(getDescription(), new RemoteTestFailure("daemon error", in.readUTF())));
+            } else {
+                Description description = describe(in.readUTF(), descriptionsByName);
+                if (event.equals(STARTED)) {
+                    notifier.fireTestStarted(description);
+                } else if (event.equals(FAILED)) {
+                    notifier.fireTestFailure(new Failure(description, readThrowable(in)));
+                } else if (event.equals(ASSUMPTION_FAILED)) {
+                    notifier.fireTestAssumptionFailed(new Failure(description, readThrowable(in)));
+                } else if (event.equals(IGNORED)) {
+                    notifier.fireTestIgnored(description);
+                } else if (event.equals(FINISHED)) {
+                    notifier.fireTestFinished(description);
+                } else {
+                    throw new IOException("unexpected event from daemon: " + event);
+                }
+            }
+        }
+    }
+
+    private Description describe(String displayName, Map<String, Description> descriptionsByName) {
+        Description description = descriptionsByName.get(displayName);
+        return description != null ? description : Description.createSuiteDescription(displayName);
+    }
+
+    private void runLocally(RunNotifier notifier) {
+        try {
+            localRunner = createLocalRunner();
+        } catch (Exception e) {
+            notifier.fireTestFailure(new Failure(getDescription(), e));
+            return;
+        }
+        localRunner.run(notifier);
+    }
+
+    private Runner createLocalRunner() throws Exception {
+        RunLocallyWith runLocallyWith = testClass.getAnnotation(RunLocallyWith.class);
+        Class<? extends Runner> runnerClass = runLocallyWith == null ? RobolectricTestRunner.class : runLocallyWith.value();
+        return runnerClass.getConstructor(Class.class).newInstance(testClass);
+    }
+
+    private Socket connect() {
+        if (port < 0) return null;
+        try {
+            return new Socket(InetAddress.getByName(null), port);
+        } catch (IOException e) {
+            return null; // no daemon running
+        }
+    }
+
+    private static int configuredPort() {
+        String port = System.getProperty(PORT_PROPERTY);
+        return port == null ? -1 : Integer.parseInt(port);
+    }
+}
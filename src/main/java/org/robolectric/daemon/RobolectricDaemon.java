@@ -0,0 +1,192 @@
+package org.robolectric.daemon;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.robolectric.RobolectricContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.robolectric.daemon.DaemonProtocol.*;
+
+/**
+ * A long-lived JVM which runs test classes on behalf of {@link DaemonTestRunner}, so the instrumenting class loader,
+ * parsed AndroidManifest and system resources built up by earlier runs are already there for later ones.
+ *
+ * Start it with the test classpath, e.g.:
+ * <pre>
+ *   java -cp ... org.robolectric.daemon.RobolectricDaemon [port] [warm-up test class...]
+ * </pre>
+ * Any warm-up test classes are bootstrapped (but not run) at startup. The daemon only listens on the loopback
+ * interface and runs one test class at a time.
+ *
+ * Since anything it's asked to run runs with the daemon's permissions, it writes a random token to
+ * {@code ~/.robolectric/daemon-<port>.token}, readable only by the user who started it, and drops any connection
+ * that doesn't begin with that token.
+ *
+ * Classes are loaded once per {@link RobolectricContext}; after recompiling, send a reload (see
+ * {@link DaemonTestRunner#reload(int)}) so the next run builds a fresh context, which will still pick up instrumented
+ * Android classes from the on-disk cache.
+ */
+public class RobolectricDaemon {
+    private final ServerSocket serverSocket;
+    private final ClassLoader classLoader;
+    private final File tokenFile;
+    private final String token;
+
+    public RobolectricDaemon(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getByName(null));
+        this.classLoader = RobolectricDaemon.class.getClassLoader();
+        this.tokenFile = tokenFileFor(getPort());
+        try {
+            this.token = createToken(tokenFile);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty(SERVER_PROPERTY, "true");
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RobolectricDaemon daemon = new RobolectricDaemon(port);
+        for (int i = 1; i < args.length; i++) {
+            daemon.warmUp(args[i]);
+        }
+
+        System.out.println("Robolectric daemon listening on port " + daemon.getPort());
+        daemon.serve();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Bootstraps the given test class's runner, which builds its {@link RobolectricContext}.
+     */
+    public void warmUp(String testClassName) throws ClassNotFoundException {
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Request.aClass(classLoader.loadClass(testClassName)).getRunner();
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
+    }
+
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) return;
+                throw e;
+            }
+
+            try {
+                handle(socket);
+            } catch (IOException e) {
+                // client went away; wait for the next one
+            } finally {
+                socket.close();
+            }
+        }
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        tokenFile.delete();
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        if (!tokensMatch(token, in.readUTF())) {
+            out.writeUTF(ERROR);
+            writeString(out, "daemon rejected the connection: wrong token (see " + tokenFile + ")");
+            out.writeUTF(DONE);
+            out.flush();
+            return;
+        }
+
+        String command = in.readUTF();
+        if (command.equals(RUN)) {
+            run(in.readUTF(), out);
+        } else if (command.equals(RELOAD)) {
+            RobolectricContext.forgetContexts();
+        } else if (command.equals(STOP)) {
+            stop();
+        } else {
+            out.writeUTF(ERROR);
+            writeString(out, "unknown command " + command);
+        }
+
+        out.writeUTF(DONE);
+        out.flush();
+    }
+
+    private void run(String testClassName, final DataOutputStream out) throws IOException {
+        Class<?> testClass;
+        try {
+            testClass = classLoader.loadClass(testClassName);
+        } catch (ClassNotFoundException e) {
+            out.writeUTF(ERROR);
+            writeString(out, "daemon couldn't find " + testClassName);
+            return;
+        }
+
+        JUnitCore junitCore = new JUnitCore();
+        junitCore.addListener(new RunListener() {
+            @Override public void testStarted(Description description) throws Exception {
+                send(STARTED, description);
+            }
+
+            @Override public void testFailure(Failure failure) throws Exception {
+                send(FAILED, failure.getDescription());
+                writeThrowable(out, failure.getException());
+            }
+
+            @Override public void testAssumptionFailure(Failure failure) {
+                try {
+                    send(ASSUMPTION_FAILED, failure.getDescription());
+                    writeThrowable(out, failure.getException());
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override public void testIgnored(Description description) throws Exception {
+                send(IGNORED, description);
+            }
+
+            @Override public void testFinished(Description description) throws Exception {
+                send(FINISHED, description);
+            }
+
+            private void send(String event, Description description) throws IOException {
+                out.writeUTF(event);
+                writeString(out, description.getDisplayName());
+            }
+        });
+
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            junitCore.run(Request.aClass(testClass));
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
+    }
+}
@@ -1,21 +1,13 @@
 package org.robolectric.res;
 
 import android.view.View;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-import java.io.File;
+
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-public class AttrResourceLoader extends XmlLoader {
+public class AttrResourceLoader extends ResourceElementLoader {
     Map<String, EnumDef> enums = new HashMap<String, EnumDef>();
     Map<String, EnumRef> enumRefs = new HashMap<String, EnumRef>();
     boolean resolved = false;
@@ -40,52 +32,41 @@ public class AttrResourceLoader extends XmlLoader {
         }
     }
 
-    @Override protected void processResourceXml(File xmlFile, Document document, XmlContext xmlContext) throws Exception {
-
-        // Pick up inline enum definitions
-        {
-            NodeList nodeList = findNodes(document, "/resources/declare-styleable/attr/enum|/resources/declare-styleable/attr/flag");
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node node = nodeList.item(i);
-                String viewName = node.getParentNode().getParentNode().getAttributes().getNamedItem("name").getNodeValue();
-                String enumName = enumName(node.getParentNode().getAttributes().getNamedItem("name").getNodeValue(), xmlContext.packageName);
-                String name = node.getAttributes().getNamedItem("name").getNodeValue();
-                String value = node.getAttributes().getNamedItem("value").getNodeValue();
-
-                classEnumToValue.put(key(viewName, enumName, name), value);
-                knownClassEnums.add(key(viewName, enumName));
+    @Override protected void processResourceElement(ResourceElement element, XmlContext xmlContext) {
+        if (element.getName().equals("declare-styleable")) {
+            String viewName = element.getAttribute("name");
+            for (ResourceElement attr : element.getChildren("attr")) {
+                String enumName = enumName(attr.getAttribute("name"), xmlContext.packageName);
+
+                if (attr.hasContent()) {
+                    // Pick up inline enum definitions
+                    for (ResourceElement enumOrFlag : attr.getChildren()) {
+                        if (!isEnumOrFlag(enumOrFlag)) continue;
+                        classEnumToValue.put(key(viewName, enumName, enumOrFlag.getAttribute("name")), enumOrFlag.getAttribute("value"));
+                        knownClassEnums.add(key(viewName, enumName));
+                    }
+                } else {
+                    // Note uses of system enums and top level local enums by childless attr nodes
+                    enumRefs.put(key(viewName, enumName), new EnumRef(viewName, enumName));
+                }
             }
-        }
-
-        // Look for any global enum definitions.
-        {
-            NodeList nodeList = findNodes(document, "/resources/attr/enum|/resources/attr/flag");
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node node = nodeList.item(i);
-
-                String enumName = enumName(node.getParentNode().getAttributes().getNamedItem("name").getNodeValue(), xmlContext.packageName);
+        } else if (element.getName().equals("attr")) {
+            // Look for any global enum definitions.
+            String enumName = enumName(element.getAttribute("name"), xmlContext.packageName);
+            for (ResourceElement enumOrFlag : element.getChildren()) {
+                if (!isEnumOrFlag(enumOrFlag)) continue;
                 EnumDef enumDef = enums.get(enumName);
                 if (enumDef == null) {
                     enumDef = new EnumDef(enumName);
                     enums.put(enumName, enumDef);
                 }
-                enumDef.values.put(node.getAttributes().getNamedItem("name").getNodeValue(),
-                        node.getAttributes().getNamedItem("value").getNodeValue());
+                enumDef.values.put(enumOrFlag.getAttribute("name"), enumOrFlag.getAttribute("value"));
             }
         }
+    }
 
-        // Note uses of system enums and top level local enums by childless attr nodes
-        {
-            NodeList nodeList = findNodes(document, "/resources/declare-styleable/attr[not(node())]");
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node node = nodeList.item(i);
-
-                String viewName = node.getParentNode().getAttributes().getNamedItem("name").getNodeValue();
-                String enumName = enumName(node.getAttributes().getNamedItem("name").getNodeValue(), xmlContext.packageName);
-
-                enumRefs.put(key(viewName, enumName), new EnumRef(viewName, enumName));
-            }
-        }
+    private static boolean isEnumOrFlag(ResourceElement element) {
+        return element.getName().equals("enum") || element.getName().equals("flag");
     }
 
     public String convertValueToEnum(Class<? extends View> viewClass, String namespace, String attrName, String attrValue) {
@@ -109,11 +90,6 @@ public class AttrResourceLoader extends XmlLoader {
         return packageName + ":" + name;
     }
 
-    private NodeList findNodes(Document document, String path) throws XPathExpressionException {
-        XPathExpression nestedEnumsXPath = XPathFactory.newInstance().newXPath().compile(path);
-        return (NodeList) nestedEnumsXPath.evaluate(document, XPathConstants.NODESET);
-    }
-
     private void resolveReferences() {
         if (!resolved) {
             for (EnumRef enumRef : enumRefs.values()) {
@@ -56,6 +56,28 @@ public class Attribute {
         return matcher.group(1);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Attribute attribute = (Attribute) o;
+
+        if (!resName.equals(attribute.resName)) return false;
+        if (!value.equals(attribute.value)) return false;
+        if (!contextPackageName.equals(attribute.contextPackageName)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = resName.hashCode();
+        result = 31 * result + value.hashCode();
+        result = 31 * result + contextPackageName.hashCode();
+        return result;
+    }
+
     @Override
     public String toString() {
         return "Attribute{" +
@@ -4,18 +4,28 @@ import org.w3c.dom.Document;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
-import java.io.FileFilter;
-
-public class DocumentLoader {
-    private static final FileFilter ENDS_WITH_XML = new FileFilter() {
-        @Override public boolean accept(File file) {
-            return file.getName().endsWith(".xml");
-        }
-    };
 
+/**
+ * Parses resource XML files into DOM documents and hands them to {@link XmlLoader}s.
+ *
+ * @see ParallelFileLoader
+ */
+public class DocumentLoader extends ParallelFileLoader<Document> {
     private final XmlLoader[] xmlLoaders;
     private final DocumentBuilderFactory documentBuilderFactory;
+    private final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>() {
+        @Override protected DocumentBuilder initialValue() {
+            try {
+                synchronized (documentBuilderFactory) {
+                    return documentBuilderFactory.newDocumentBuilder();
+                }
+            } catch (ParserConfigurationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
 
     public DocumentLoader(XmlLoader... xmlLoaders) {
         this.xmlLoaders = xmlLoaders;
@@ -26,36 +36,15 @@ public class DocumentLoader {
         documentBuilderFactory.setIgnoringElementContentWhitespace(true);
     }
 
-    public void loadResourceXmlSubDirs(ResourcePath resourcePath, final String folderBaseName) throws Exception {
-        for (File dir : resourcePath.resourceBase.listFiles(new DirectoryMatchingFileFilter(folderBaseName))) {
-            loadResourceXmlDir(resourcePath, dir);
-        }
-    }
-
-    public void loadResourceXmlDir(ResourcePath resourcePath, String dirName) throws Exception {
-        loadResourceXmlDir(resourcePath, new File(resourcePath.resourceBase, dirName));
+    @Override
+    Document parse(File xmlFile) throws Exception {
+        return documentBuilders.get().parse(xmlFile);
     }
 
-    private void loadResourceXmlDir(ResourcePath resourcePath, File dir) throws Exception {
-        if (!dir.exists()) {
-            throw new RuntimeException("no such directory " + dir);
-        }
-
-        for (File file : dir.listFiles(ENDS_WITH_XML)) {
-            loadResourceXmlFile(file, resourcePath.getPackageName());
-        }
-    }
-
-    private void loadResourceXmlFile(File file, String packageName) throws Exception {
-        Document document = parse(file);
+    @Override
+    void process(File xmlFile, Document document, String packageName) throws Exception {
         for (XmlLoader xmlLoader : xmlLoaders) {
-            xmlLoader.processResourceXml(file, document, packageName);
+            xmlLoader.processResourceXml(xmlFile, document, packageName);
         }
     }
-
-    private Document parse(File xmlFile) throws Exception {
-        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-        return documentBuilder.parse(xmlFile);
-    }
-
 }
@@ -0,0 +1,109 @@
+package org.robolectric.res;
+
+/**
+ * Maps resource ids to names with open addressing on a primitive int array, so looking up a name by id neither boxes
+ * the id nor takes a lock.
+ *
+ * Writes must be serialized by the caller, but reads may happen concurrently with them: entries are published by the
+ * volatile write to {@link #size}, and a reader that races a write simply doesn't see the new entry yet. Id 0 is never
+ * a valid resource id, so it marks empty slots.
+ */
+class IntResNameMap {
+    private static final int EMPTY = 0;
+
+    private volatile Table table = new Table(16);
+    private volatile int size;
+
+    public ResName get(int id) {
+        if (id == EMPTY || size == 0) return null;
+
+        Table table = this.table;
+        int mask = table.ids.length - 1;
+        for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+            int slotId = table.ids[i];
+            if (slotId == id) return table.resNames[i];
+            if (slotId == EMPTY) return null;
+        }
+    }
+
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    public void put(int id, ResName resName) {
+        if (id == EMPTY) throw new IllegalArgumentException("0 isn't a valid resource id");
+
+        if ((size + 1) * 4 > table.ids.length * 3) {
+            Table newTable = new Table(table.ids.length * 2);
+            Table oldTable = table;
+            for (int i = 0; i < oldTable.ids.length; i++) {
+                if (oldTable.ids[i] != EMPTY) newTable.put(oldTable.ids[i], oldTable.resNames[i]);
+            }
+            table = newTable;
+        }
+
+        boolean added = table.put(id, resName);
+        size = added ? size + 1 : size; // always written, since the volatile write is what publishes the entry
+    }
+
+    public void putAll(IntResNameMap other) {
+        Table otherTable = other.table;
+        for (int i = 0; i < otherTable.ids.length; i++) {
+            if (otherTable.ids[i] != EMPTY) put(otherTable.ids[i], otherTable.resNames[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int maxKey() {
+        if (size == 0) throw new IllegalStateException("empty");
+
+        Table table = this.table;
+        int max = Integer.MIN_VALUE;
+        for (int id : table.ids) {
+            if (id != EMPTY && id > max) max = id;
+        }
+        return max;
+    }
+
+    private static int mix(int id) {
+        // resource ids are dense in their low bits and share their high ones, so spread them before masking
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static class Table {
+        final int[] ids;
+        final ResName[] resNames;
+
+        Table(int capacity) {
+            ids = new int[capacity];
+            resNames = new ResName[capacity];
+        }
+
+        /**
+         * @return true if the id wasn't there before
+         */
+        boolean put(int id, ResName resName) {
+            int mask = ids.length - 1;
+            for (int i = mix(id) & mask; ; i = (i + 1) & mask) {
+                if (ids[i] == id) {
+                    resNames[i] = resName;
+                    return false;
+                }
+                if (ids[i] == EMPTY) {
+                    // the name goes in first, so a reader never finds the id without it
+                    resNames[i] = resName;
+                    ids[i] = id;
+                    return true;
+                }
+            }
+        }
+    }
+}
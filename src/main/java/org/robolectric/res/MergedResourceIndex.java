@@ -16,8 +16,18 @@ public class MergedResourceIndex extends ResourceIndex {
     private static <K,V> void merge(Map<K, V> map1, Map<K, V> map2, String name) {
         int expected = map1.size() + map2.size();
         map1.putAll(map2);
-        if (map1.size() != expected) {
-            throw new IllegalStateException("there must have been some overlap for " + name + "! expected " + expected + " but got " + map1.size());
+        checkNoOverlap(name, expected, map1.size());
+    }
+
+    private static void merge(IntResNameMap map1, IntResNameMap map2, String name) {
+        int expected = map1.size() + map2.size();
+        map1.putAll(map2);
+        checkNoOverlap(name, expected, map1.size());
+    }
+
+    private static void checkNoOverlap(String name, int expected, int actual) {
+        if (actual != expected) {
+            throw new IllegalStateException("there must have been some overlap for " + name + "! expected " + expected + " but got " + actual);
         }
     }
 
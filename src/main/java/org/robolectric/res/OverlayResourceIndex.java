@@ -28,7 +28,7 @@ class OverlayResourceIndex extends ResourceIndex {
             for (Map.Entry<ResName, Integer> entry : subResourceIndex.resourceNameToId.entrySet()) {
                 ResName resName = entry.getKey();
                 int value = entry.getValue();
-                ResName localResName = resName.withPackageName(packageName);
+                ResName localResName = resName.withPackageName(packageName).intern();
                 if (OverlayResourceLoader.DEBUG) resEntries.add(localResName, resName, value);
                 resourceNameToId.put(localResName, value);
                 resourceIdToResName.put(value, localResName);
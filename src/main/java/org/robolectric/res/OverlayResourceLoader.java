@@ -17,27 +17,41 @@ public class OverlayResourceLoader extends XResourceLoader {
     }
 
     @Override
-    void doInitialize() {
+    void doInitialize(Category category) {
         for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
-            subResourceLoader.initialize();
-
-            booleanResolver.mergeLibraryStyle(subResourceLoader.booleanResolver, packageName);
-            colorResolver.mergeLibraryStyle(subResourceLoader.colorResolver, packageName);
-            dimenResolver.mergeLibraryStyle(subResourceLoader.dimenResolver, packageName);
-            integerResolver.mergeLibraryStyle(subResourceLoader.integerResolver, packageName);
-            pluralsResolver.mergeLibraryStyle(subResourceLoader.pluralsResolver, packageName);
-            stringResolver.mergeLibraryStyle(subResourceLoader.stringResolver, packageName);
-            viewNodes.mergeLibraryStyle(subResourceLoader.viewNodes, packageName);
-            menuNodes.mergeLibraryStyle(subResourceLoader.menuNodes, packageName);
-            drawableNodes.mergeLibraryStyle(subResourceLoader.drawableNodes, packageName);
-            preferenceNodes.mergeLibraryStyle(subResourceLoader.preferenceNodes, packageName);
-            xmlDocuments.mergeLibraryStyle(subResourceLoader.xmlDocuments, packageName);
+            subResourceLoader.initialize(category);
+
+            switch (category) {
+                case VALUES:
+                    booleanResolver.mergeLibraryStyle(subResourceLoader.booleanResolver, packageName);
+                    colorResolver.mergeLibraryStyle(subResourceLoader.colorResolver, packageName);
+                    dimenResolver.mergeLibraryStyle(subResourceLoader.dimenResolver, packageName);
+                    integerResolver.mergeLibraryStyle(subResourceLoader.integerResolver, packageName);
+                    pluralsResolver.mergeLibraryStyle(subResourceLoader.pluralsResolver, packageName);
+                    stringResolver.mergeLibraryStyle(subResourceLoader.stringResolver, packageName);
+                    break;
+                case LAYOUT:
+                    viewNodes.mergeLibraryStyle(subResourceLoader.viewNodes, packageName);
+                    break;
+                case MENU:
+                    menuNodes.mergeLibraryStyle(subResourceLoader.menuNodes, packageName);
+                    break;
+                case DRAWABLE:
+                    drawableNodes.mergeLibraryStyle(subResourceLoader.drawableNodes, packageName);
+                    break;
+                case XML:
+                    preferenceNodes.mergeLibraryStyle(subResourceLoader.preferenceNodes, packageName);
+                    xmlDocuments.mergeLibraryStyle(subResourceLoader.xmlDocuments, packageName);
+                    break;
+                default:
+                    break;
+            }
         }
     }
 
     @Override
     public boolean hasAttributeFor(Class<? extends View> viewClass, String namespace, String attribute) {
-        initialize();
+        initialize(Category.VALUES);
 
         // todo: this sucks
         for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
@@ -49,7 +63,7 @@ public class OverlayResourceLoader extends XResourceLoader {
 
     @Override
     public String convertValueToEnum(Class<? extends View> viewClass, String namespace, String attribute, String part) {
-        initialize();
+        initialize(Category.VALUES);
 
         // todo: this sucks
         for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
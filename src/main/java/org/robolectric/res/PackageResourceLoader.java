@@ -5,15 +5,34 @@ import org.robolectric.util.I18nException;
 public class PackageResourceLoader extends XResourceLoader {
     ResourcePath resourcePath;
     ResourceIndex resourceIndex;
+    private final ResourceTableCache resourceTableCache;
 
     public PackageResourceLoader(ResourcePath resourcePath) {
+        this(resourcePath, null);
+    }
+
+    /**
+     * @param resourceTableCache where to keep a binary copy of the loaded resources between runs, or null
+     */
+    public PackageResourceLoader(ResourcePath resourcePath, ResourceTableCache resourceTableCache) {
         super(new ResourceExtractor(resourcePath));
         this.resourcePath = resourcePath;
+        this.resourceTableCache = resourceTableCache;
     }
 
-    void doInitialize() {
+    void doInitialize(Category category) {
         try {
-            loadEverything();
+            if (category == Category.RAW) {
+                rawResourceLoaders.add(new RawResourceLoader(getResourceIndex(), resourcePath.resourceBase));
+            } else if (resourceTableCache == null) {
+                load(category);
+            } else if (!resourceTableCache.load(resourcePath, this, category)) {
+                load(category);
+                resourceTableCache.save(resourcePath, this, category);
+            }
+
+            // after saving: whatever this loads comes from outside the resource files the table is keyed on
+            if (category == Category.VALUES) loadOtherResources(resourcePath);
         } catch (I18nException e) {
             throw e;
         } catch (Exception e) {
@@ -21,32 +40,42 @@ public class PackageResourceLoader extends XResourceLoader {
         }
     }
 
-    private void loadEverything() throws Exception {
-        System.out.println("DEBUG: Loading resources for " + resourcePath.getPackageName() + " from " + resourcePath.resourceBase + "...");
-
-        new DocumentLoader(
-                new ValueResourceLoader(booleanResolver, "bool", false),
-                new ValueResourceLoader(colorResolver, "color", false),
-                new ValueResourceLoader(dimenResolver, "dimen", false),
-                new ValueResourceLoader(integerResolver, "integer", true),
-                new PluralResourceLoader(resourceIndex, pluralsResolver),
-                new ValueResourceLoader(stringResolver, "string", true),
-                attrResourceLoader
-        ).loadResourceXmlSubDirs(resourcePath, "values");
-
-        new DocumentLoader(new ViewLoader(viewNodes)).loadResourceXmlSubDirs(resourcePath, "layout");
-        new DocumentLoader(new MenuLoader(menuNodes)).loadResourceXmlSubDirs(resourcePath, "menu");
-        DrawableResourceLoader drawableResourceLoader = new DrawableResourceLoader(drawableNodes);
-        drawableResourceLoader.findNinePatchResources(resourcePath);
-        new DocumentLoader(drawableResourceLoader).loadResourceXmlSubDirs(resourcePath, "drawable");
-        new DocumentLoader(new PreferenceLoader(preferenceNodes)).loadResourceXmlSubDirs(resourcePath, "xml");
-        new DocumentLoader(new XmlFileLoader(xmlDocuments)).loadResourceXmlSubDirs(resourcePath, "xml");
-
-        loadOtherResources(resourcePath);
-
-        rawResourceLoaders.add(new RawResourceLoader(resourceIndex, resourcePath.resourceBase));
+    void load(Category category) throws Exception {
+        switch (category) {
+            case VALUES:
+                new StaxDocumentLoader(
+                        new ValueResourceLoader(booleanResolver, "bool", false),
+                        new ValueResourceLoader(colorResolver, "color", false),
+                        new ValueResourceLoader(dimenResolver, "dimen", false),
+                        new ValueResourceLoader(integerResolver, "integer", true),
+                        new PluralResourceLoader(resourceIndex, pluralsResolver),
+                        new ValueResourceLoader(stringResolver, "string", true),
+                        attrResourceLoader
+                ).loadResourceXmlSubDirs(resourcePath, "values");
+                break;
+            case LAYOUT:
+                new DocumentLoader(new ViewLoader(viewNodes)).loadResourceXmlSubDirs(resourcePath, "layout");
+                break;
+            case MENU:
+                new DocumentLoader(new MenuLoader(menuNodes)).loadResourceXmlSubDirs(resourcePath, "menu");
+                break;
+            case DRAWABLE:
+                DrawableResourceLoader drawableResourceLoader = new DrawableResourceLoader(drawableNodes);
+                drawableResourceLoader.findNinePatchResources(resourcePath);
+                new DocumentLoader(drawableResourceLoader).loadResourceXmlSubDirs(resourcePath, "drawable");
+                break;
+            case XML:
+                new DocumentLoader(new PreferenceLoader(preferenceNodes), new XmlFileLoader(xmlDocuments)).loadResourceXmlSubDirs(resourcePath, "xml");
+                break;
+            default:
+                throw new IllegalArgumentException(category.toString());
+        }
     }
 
+    /**
+     * Called once values are loaded, to load any values from elsewhere. It's called every time, whether the values
+     * came from the XML or from a {@link ResourceTableCache}, and nothing it loads is kept in the table.
+     */
     protected void loadOtherResources(ResourcePath resourcePath) {
     }
 
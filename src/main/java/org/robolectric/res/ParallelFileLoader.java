@@ -0,0 +1,125 @@
+package org.robolectric.res;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads the XML files in resource directories.
+ *
+ * Files are parsed in parallel on a shared pool of daemon threads, but the results are always processed one at a
+ * time on the calling thread, in directory and file name order, so the loaders don't need to be thread-safe and the
+ * results don't depend on scheduling.
+ */
+abstract class ParallelFileLoader<T> {
+    private static final FileFilter ENDS_WITH_XML = new FileFilter() {
+        @Override public boolean accept(File file) {
+            return file.getName().endsWith(".xml");
+        }
+    };
+
+    private static final int PARSER_THREADS = Runtime.getRuntime().availableProcessors();
+    // how many files may be parsed ahead of the loaders, so we don't hold every document in a big directory at once
+    private static final int PARSE_AHEAD = PARSER_THREADS * 4;
+    private static ExecutorService parserExecutor;
+
+    public void loadResourceXmlSubDirs(ResourcePath resourcePath, final String folderBaseName) throws Exception {
+        File[] dirs = resourcePath.resourceBase.listFiles(new DirectoryMatchingFileFilter(folderBaseName));
+        Arrays.sort(dirs);
+
+        List<File> files = new ArrayList<File>();
+        for (File dir : dirs) {
+            files.addAll(xmlFilesIn(dir));
+        }
+        loadResourceXmlFiles(files, resourcePath.getPackageName());
+    }
+
+    public void loadResourceXmlDir(ResourcePath resourcePath, String dirName) throws Exception {
+        File dir = new File(resourcePath.resourceBase, dirName);
+        loadResourceXmlFiles(xmlFilesIn(dir), resourcePath.getPackageName());
+    }
+
+    /**
+     * Called on a parser thread.
+     */
+    abstract T parse(File xmlFile) throws Exception;
+
+    /**
+     * Called on the loading thread, in file order.
+     */
+    abstract void process(File xmlFile, T parsed, String packageName) throws Exception;
+
+    private List<File> xmlFilesIn(File dir) {
+        if (!dir.exists()) {
+            throw new RuntimeException("no such directory " + dir);
+        }
+
+        File[] files = dir.listFiles(ENDS_WITH_XML);
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private void loadResourceXmlFiles(List<File> files, String packageName) throws Exception {
+        if (PARSER_THREADS == 1 || files.size() < 2) {
+            for (File file : files) {
+                process(file, parse(file), packageName);
+            }
+            return;
+        }
+
+        ExecutorService executor = getParserExecutor();
+        List<Future<T>> results = new ArrayList<Future<T>>(files.size());
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                while (results.size() < Math.min(i + PARSE_AHEAD, files.size())) {
+                    final File file = files.get(results.size());
+                    results.add(executor.submit(new Callable<T>() {
+                        @Override public T call() throws Exception {
+                            return parse(file);
+                        }
+                    }));
+                }
+
+                T parsed;
+                try {
+                    parsed = results.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) throw (Exception) cause;
+                    throw new RuntimeException(cause);
+                }
+                results.set(i, null);
+                process(files.get(i), parsed, packageName);
+            }
+        } finally {
+            for (Future<T> result : results) {
+                if (result != null) result.cancel(false);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getParserExecutor() {
+        if (parserExecutor == null) {
+            parserExecutor = Executors.newFixedThreadPool(PARSER_THREADS, new ThreadFactory() {
+                private int threadCount;
+
+                @Override public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "robolectric-resource-parser-" + ++threadCount);
+                    thread.setDaemon(true);
+                    // not whatever the first caller's happened to be, which the pool would otherwise keep alive forever
+                    thread.setContextClassLoader(ParallelFileLoader.class.getClassLoader());
+                    return thread;
+                }
+            });
+        }
+        return parserExecutor;
+    }
+}
@@ -1,40 +1,154 @@
 package org.robolectric.res;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Opens files in a resource directory's raw folder. The folder is listed once, when the loader is created, and the
+ * contents of small files are kept in memory after they're first read. Set the
+ * {@value #MAP_RAW_RESOURCES_PROPERTY} system property to true to have larger files memory-mapped rather than opened
+ * as a {@link FileInputStream} each time.
+ */
 public class RawResourceLoader {
+    public static final String MAP_RAW_RESOURCES_PROPERTY = "robolectric.mapRawResources";
+    static final int SMALL_FILE_SIZE = 64 * 1024;
 
-    private ResourceIndex resourceIndex;
-    private File resourceDir;
+    private final ResourceIndex resourceIndex;
+    private final boolean mapLargeFiles;
+    private final Map<String, File> filesByBaseName = new HashMap<String, File>();
+    private final Map<File, ByteBuffer> contents = new ConcurrentHashMap<File, ByteBuffer>();
 
     public RawResourceLoader(ResourceIndex resourceIndex, File resourceDir) {
-        this.resourceIndex = resourceIndex;
-        this.resourceDir = resourceDir;
+        this(resourceIndex, resourceDir, Boolean.getBoolean(MAP_RAW_RESOURCES_PROPERTY));
     }
 
-    public InputStream getValue(int resourceId) {
-        String resourceFileName = resourceIndex.getResName(resourceId).name;
-        File rawResourceDir = new File(resourceDir, "raw");
+    public RawResourceLoader(ResourceIndex resourceIndex, File resourceDir, boolean mapLargeFiles) {
+        this.resourceIndex = resourceIndex;
+        this.mapLargeFiles = mapLargeFiles;
 
-        File[] files = rawResourceDir.listFiles();
+        File[] files = new File(resourceDir, "raw").listFiles();
         if (files != null) {
             for (File file : files) {
                 String name = file.getName();
                 int dotIndex = name.indexOf(".");
                 String fileBaseName = dotIndex >= 0 ? name.substring(0, dotIndex) : name;
-                if (fileBaseName.equals(resourceFileName)) {
-                    try {
-                        return new FileInputStream(file);
-                    } catch (FileNotFoundException e) {
-                        throw new RuntimeException(e);
-                    }
+                if (!filesByBaseName.containsKey(fileBaseName)) filesByBaseName.put(fileBaseName, file);
+            }
+        }
+    }
+
+    public InputStream getValue(int resourceId) {
+        ResName resName = resourceIndex.getResName(resourceId);
+        File file = resName == null ? null : filesByBaseName.get(resName.name);
+        if (file == null) return null;
+
+        try {
+            ByteBuffer buf = contents.get(file);
+            if (buf == null) {
+                long length = file.length();
+                if (length <= SMALL_FILE_SIZE) {
+                    buf = ByteBuffer.wrap(readFully(file));
+                } else if (mapLargeFiles) {
+                    buf = map(file);
+                } else {
+                    return new FileInputStream(file);
                 }
+                contents.put(file, buf);
             }
+            return buf.hasArray()
+                    ? new ByteArrayInputStream(buf.array(), buf.arrayOffset(), buf.remaining())
+                    : new ByteBufferInputStream(buf.duplicate());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                int count = in.read(bytes, offset, bytes.length - offset);
+                if (count < 0) break;
+                offset += count;
+            }
+            if (offset < bytes.length) {
+                byte[] truncated = new byte[offset];
+                System.arraycopy(bytes, 0, truncated, 0, offset);
+                return truncated;
+            }
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close(); // no problem, the mapping outlives the channel
         }
-        return null;
     }
 
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+            buf.mark();
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int count = Math.min(length, buf.remaining());
+            buf.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            buf.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buf.reset();
+        }
+    }
 }
@@ -1,10 +1,10 @@
 package org.robolectric.res;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResBundle<T> {
     private final ResMap<T> valuesMap = new ResMap<T>();
@@ -13,16 +13,12 @@ public class ResBundle<T> {
 
     public void put(String attrType, String name, T value, XmlLoader.XmlContext xmlContext) {
         ResName resName = new ResName(maybeOverride(xmlContext.packageName), attrType, name);
-        Values<T> values = valuesMap.find(resName);
-        values.add(new Value<T>(xmlContext.getQualifiers(), value, xmlContext));
-        Collections.sort(values);
+        valuesMap.find(resName).insert(new Value<T>(xmlContext.getQualifiers(), value, xmlContext));
     }
 
     public void putArray(String attrType, String name, List<T> value, XmlLoader.XmlContext xmlContext) {
         ResName resName = new ResName(maybeOverride(xmlContext.packageName), attrType, name);
-        Values<List<T>> values = valuesArrayMap.find(resName);
-        values.add(new Value<List<T>>(xmlContext.getQualifiers(), value, xmlContext));
-        Collections.sort(values);
+        valuesArrayMap.find(resName).insert(new Value<List<T>>(xmlContext.getQualifiers(), value, xmlContext));
     }
 
     public T get(ResName resName, String qualifiers) {
@@ -31,7 +27,7 @@ public class ResBundle<T> {
     }
 
     public Value<T> getValue(ResName resName, String qualifiers) {
-        Values<T> values = valuesMap.find(maybeOverride(resName));
+        Values<T> values = valuesMap.get(maybeOverride(resName));
         return (values != null) ? pick(values, qualifiers) : null;
     }
 
@@ -41,42 +37,12 @@ public class ResBundle<T> {
     }
 
     public Value<List<T>> getListValue(ResName resName, String qualifiers) {
-        Values<List<T>> values = valuesArrayMap.find(maybeOverride(resName));
+        Values<List<T>> values = valuesArrayMap.get(maybeOverride(resName));
         return (values != null) ? pick(values, qualifiers) : null;
     }
 
     public static <T> Value<T> pick(Values<T> values, String qualifiers) {
-        final int count = values.size();
-        if (count >= Long.SIZE) throw new RuntimeException("really, more than " + Long.SIZE + " qualifiers?!?");
-        if (count == 0) return null;
-
-        long possibles = 0;
-        for (int i = 0; i < count; i++) possibles |= 1 << i;
-
-        String[] qualifierList = qualifiers.split("-");
-        for (String qualifier : qualifierList) {
-            String paddedQualifier = "-" + qualifier + "-";
-            long matches = 0;
-
-            for (int i = 0; i < count; i++) {
-                if ((possibles & (1 << i)) == 0) continue;
-
-                if (values.get(i).qualifiers.contains(paddedQualifier)) {
-                    matches |= 1 << i;
-                }
-            }
-
-            if (matches != 0) {
-                possibles &= matches; // eliminate any that didn't match this qualifier
-            }
-
-            if (Long.bitCount(matches) == 1) break;
-        }
-
-        for (int i = 0; i < count; i++) {
-            if ((possibles & (1 << i)) != 0) return values.get(i);
-        }
-        throw new IllegalStateException("couldn't handle qualifiers \"" + qualifiers + "\"");
+        return values.pick(qualifiers);
     }
 
     public int size() {
@@ -88,6 +54,10 @@ public class ResBundle<T> {
         valuesArrayMap.makeImmutable();
     }
 
+    boolean isImmutable() {
+        return valuesMap.immutable;
+    }
+
     public void overrideNamespace(String overrideNamespace) {
         this.overrideNamespace = overrideNamespace;
         if (size() > 0) throw new RuntimeException();
@@ -106,6 +76,22 @@ public class ResBundle<T> {
         valuesArrayMap.merge(packageName, fromResBundle.valuesArrayMap);
     }
 
+    Map<ResName, Values<T>> values() {
+        return valuesMap.map;
+    }
+
+    Map<ResName, Values<List<T>>> arrayValues() {
+        return valuesArrayMap.map;
+    }
+
+    void putValue(ResName resName, Value<T> value) {
+        valuesMap.find(resName).add(value);
+    }
+
+    void putArrayValue(ResName resName, Value<List<T>> value) {
+        valuesArrayMap.find(resName).add(value);
+    }
+
     static class Value<T> implements Comparable<Value<T>> {
         final String qualifiers;
         final T value;
@@ -128,15 +114,96 @@ public class ResBundle<T> {
     }
 
     static class Values<T> extends ArrayList<Value<T>> {
+        private static final Map<String, String[]> SPLIT_QUALIFIERS = new ConcurrentHashMap<String, String[]>();
+
+        // once frozen: for each qualifier, a bit for each value that has it
+        private Map<String, Long> qualifierMasks;
+        private Map<String, Value<T>> picks;
+
+        /**
+         * Adds a value after any with the same or lower-sorting qualifiers, keeping the list sorted.
+         */
+        void insert(Value<T> value) {
+            int i = size();
+            while (i > 0 && get(i - 1).compareTo(value) > 0) i--;
+            add(i, value);
+        }
+
+        /**
+         * Indexes the values by qualifier and starts remembering picks; don't change the list after this.
+         */
+        void freeze() {
+            if (picks != null) return;
+            qualifierMasks = indexQualifiers();
+            picks = new ConcurrentHashMap<String, Value<T>>();
+        }
+
+        Value<T> pick(String qualifiers) {
+            if (picks == null) return pick(qualifiers, indexQualifiers());
+
+            Value<T> value = picks.get(qualifiers);
+            if (value == null) {
+                value = pick(qualifiers, qualifierMasks);
+                if (value != null) picks.put(qualifiers, value);
+            }
+            return value;
+        }
+
+        private Value<T> pick(String qualifiers, Map<String, Long> qualifierMasks) {
+            final int count = size();
+            if (count >= Long.SIZE) throw new RuntimeException("really, more than " + Long.SIZE + " qualifiers?!?");
+            if (count == 0) return null;
+
+            long possibles = (1L << count) - 1;
+
+            for (String qualifier : split(qualifiers)) {
+                Long mask = qualifierMasks.get(qualifier);
+                long matches = mask == null ? 0 : possibles & mask;
+
+                if (matches != 0) {
+                    possibles = matches; // eliminate any that didn't match this qualifier
+                }
+
+                if (Long.bitCount(matches) == 1) break;
+            }
+
+            if (possibles != 0) return get(Long.numberOfTrailingZeros(possibles));
+            throw new IllegalStateException("couldn't handle qualifiers \"" + qualifiers + "\"");
+        }
+
+        private Map<String, Long> indexQualifiers() {
+            Map<String, Long> qualifierMasks = new HashMap<String, Long>();
+            for (int i = 0; i < size() && i < Long.SIZE; i++) {
+                String paddedQualifiers = get(i).qualifiers;
+                for (String qualifier : split(paddedQualifiers.substring(1, paddedQualifiers.length() - 1))) {
+                    Long mask = qualifierMasks.get(qualifier);
+                    qualifierMasks.put(qualifier, (mask == null ? 0 : mask) | 1L << i);
+                }
+            }
+            return qualifierMasks;
+        }
+
+        private static String[] split(String qualifiers) {
+            String[] split = SPLIT_QUALIFIERS.get(qualifiers);
+            if (split == null) {
+                split = qualifiers.split("-");
+                SPLIT_QUALIFIERS.put(qualifiers, split);
+            }
+            return split;
+        }
     }
 
     private static class ResMap<T> {
         private final Map<ResName, Values<T>> map = new HashMap<ResName, Values<T>>();
         private boolean immutable;
 
+        public Values<T> get(ResName resName) {
+            return map.get(resName);
+        }
+
         public Values<T> find(ResName resName) {
             Values<T> values = map.get(resName);
-            if (values == null) map.put(resName, values = new Values<T>());
+            if (values == null) map.put(resName.intern(), values = new Values<T>());
             return values;
         }
 
@@ -157,6 +224,9 @@ public class ResBundle<T> {
 
         public void makeImmutable() {
             immutable = true;
+            for (Values<T> values : map.values()) {
+                values.freeze();
+            }
         }
     }
 }
@@ -2,37 +2,51 @@ package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ResName {
-    private static final Pattern FQN_PATTERN = Pattern.compile("^([^:]*):([^/]+)/(.+)$");
-    private static final int NAMESPACE = 1;
-    private static final int TYPE = 2;
-    private static final int NAME = 3;
+    private static final ConcurrentMap<ResName, ResName> INTERNED = new ConcurrentHashMap<ResName, ResName>();
 
     public final @NotNull String namespace;
     public final @NotNull String type;
     public final @NotNull String name;
+    private final int hashCode;
 
     public ResName(@NotNull String namespace, @NotNull String type, @NotNull String name) {
         this.name = name;
         this.namespace = namespace;
         this.type = type;
+        hashCode = computeHashCode();
     }
 
+    /**
+     * @param fullyQualifiedName a name like "package:type/name"
+     */
     public ResName(@NotNull String fullyQualifiedName) {
-        Matcher matcher = FQN_PATTERN.matcher(fullyQualifiedName);
-        if (!matcher.find()) {
+        int colon = fullyQualifiedName.indexOf(':');
+        int slash = colon == -1 ? -1 : fullyQualifiedName.indexOf('/', colon + 1);
+        if (slash == -1 || slash == colon + 1 || slash == fullyQualifiedName.length() - 1) {
             throw new IllegalStateException("\"" + fullyQualifiedName + "\" is not fully qualified");
         }
-        namespace = matcher.group(NAMESPACE);
-        type = matcher.group(TYPE);
-        name = matcher.group(NAME);
+        namespace = fullyQualifiedName.substring(0, colon);
+        type = fullyQualifiedName.substring(colon + 1, slash);
+        name = fullyQualifiedName.substring(slash + 1);
+        hashCode = computeHashCode();
 
         if (namespace.equals("xmlns")) throw new IllegalStateException("\"" + fullyQualifiedName + "\" unexpected");
     }
 
+    /**
+     * Returns the canonical instance equal to this name, like {@link String#intern()}. Names that are kept for the
+     * life of a loader, like those from R classes and resource files, are interned so equal names share one instance
+     * and usually compare by identity.
+     */
+    public ResName intern() {
+        ResName interned = INTERNED.putIfAbsent(this, this);
+        return interned == null ? this : interned;
+    }
+
     public static @NotNull String qualifyResourceName(String possiblyQualifiedResourceName, String contextPackageName) {
         if (possiblyQualifiedResourceName.contains(":")) {
             return possiblyQualifiedResourceName;
@@ -52,14 +66,27 @@ public class ResName {
 
         String fullyQualifiedResourceName = qualifyResourceName(possiblyQualifiedResourceName, contextPackageName);
 
-        fullyQualifiedResourceName = fullyQualifiedResourceName.replaceAll("[@+]", "");
+        fullyQualifiedResourceName = remove(fullyQualifiedResourceName, "@+");
         Integer resourceId = resourceIndex.getResourceId(new ResName(fullyQualifiedResourceName));
         // todo warn if resourceId is null
         return resourceId;
     }
 
     public ResName qualify(String string) {
-        return new ResName(qualifyResourceName(string.replace("@", ""), namespace));
+        return new ResName(qualifyResourceName(remove(string, "@"), namespace));
+    }
+
+    private static String remove(String string, String charsToRemove) {
+        StringBuilder buf = null;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (charsToRemove.indexOf(c) == -1) {
+                if (buf != null) buf.append(c);
+            } else if (buf == null) {
+                buf = new StringBuilder(string.length()).append(string, 0, i);
+            }
+        }
+        return buf == null ? string : buf.toString();
     }
 
     @Override
@@ -69,6 +96,7 @@ public class ResName {
 
         ResName resName = (ResName) o;
 
+        if (hashCode != resName.hashCode) return false;
         if (!namespace.equals(resName.namespace)) return false;
         if (!type.equals(resName.type)) return false;
         if (!name.equals(resName.name)) return false;
@@ -78,6 +106,10 @@ public class ResName {
 
     @Override
     public int hashCode() {
+        return hashCode;
+    }
+
+    private int computeHashCode() {
         int result = namespace.hashCode();
         result = 31 * result + type.hashCode();
         result = 31 * result + name.hashCode();
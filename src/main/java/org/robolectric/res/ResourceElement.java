@@ -0,0 +1,182 @@
+package org.robolectric.res;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A top-level element from a values file and its subtree: just the names, attributes and text the values loaders
+ * look at, so they don't need a DOM or XPath.
+ */
+public class ResourceElement {
+    private final String name;
+    private final Map<String, String> attributes;
+    private final List<ResourceElement> children = new ArrayList<ResourceElement>();
+    // text and child elements, in document order
+    private final List<Object> contents = new ArrayList<Object>();
+
+    ResourceElement(String name, Map<String, String> attributes) {
+        this.name = name;
+        this.attributes = attributes;
+    }
+
+    /**
+     * @return the element's qualified name, e.g. "string" or "xliff:g"
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public List<ResourceElement> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    public List<ResourceElement> getChildren(String name) {
+        List<ResourceElement> namedChildren = new ArrayList<ResourceElement>();
+        for (ResourceElement child : children) {
+            if (child.name.equals(name)) namedChildren.add(child);
+        }
+        return namedChildren;
+    }
+
+    /**
+     * @return all the descendants with the given name, in document order
+     */
+    public List<ResourceElement> getDescendants(String name) {
+        List<ResourceElement> descendants = new ArrayList<ResourceElement>();
+        addDescendants(name, descendants);
+        return descendants;
+    }
+
+    private void addDescendants(String name, List<ResourceElement> descendants) {
+        for (ResourceElement child : children) {
+            if (child.name.equals(name)) descendants.add(child);
+            child.addDescendants(name, descendants);
+        }
+    }
+
+    /**
+     * @return true if the element has any content at all, even whitespace, like {@link Node#hasChildNodes()}
+     */
+    public boolean hasContent() {
+        return !contents.isEmpty();
+    }
+
+    /**
+     * @return the text of the element and all its descendants, like {@link Node#getTextContent()}
+     */
+    public String getTextContent() {
+        if (contents.size() == 1 && contents.get(0) instanceof String) return (String) contents.get(0);
+
+        StringBuilder buf = new StringBuilder();
+        appendTextContent(buf);
+        return buf.toString();
+    }
+
+    private void appendTextContent(StringBuilder buf) {
+        for (Object content : contents) {
+            if (content instanceof ResourceElement) {
+                ((ResourceElement) content).appendTextContent(buf);
+            } else {
+                buf.append((String) content);
+            }
+        }
+    }
+
+    private void addChild(ResourceElement child) {
+        children.add(child);
+        contents.add(child);
+    }
+
+    private void addText(String text) {
+        if (text.length() == 0) return;
+
+        int last = contents.size() - 1;
+        if (last >= 0 && contents.get(last) instanceof String) {
+            contents.set(last, contents.get(last) + text);
+        } else {
+            contents.add(text);
+        }
+    }
+
+    /**
+     * Reads the element the reader is positioned at, leaving the reader at its end tag.
+     */
+    static ResourceElement read(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> attributes = new HashMap<String, String>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attributes.put(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+        }
+        ResourceElement element = new ResourceElement(qualifiedName(reader.getPrefix(), reader.getLocalName()), attributes);
+
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    element.addChild(read(reader));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    element.addText(reader.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return element;
+                default:
+                    // comments and processing instructions aren't content
+                    break;
+            }
+        }
+    }
+
+    static ResourceElement from(Element domElement) {
+        Map<String, String> attributes = new HashMap<String, String>();
+        NamedNodeMap domAttributes = domElement.getAttributes();
+        for (int i = 0; i < domAttributes.getLength(); i++) {
+            Node attr = domAttributes.item(i);
+            attributes.put(attr.getNodeName(), attr.getNodeValue());
+        }
+        ResourceElement element = new ResourceElement(domElement.getNodeName(), attributes);
+
+        for (Node child = domElement.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    element.addChild(from((Element) child));
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                case Node.ENTITY_REFERENCE_NODE:
+                    element.addText(child.getTextContent());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return element;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0 ? localName : prefix + ":" + localName;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceElement{" +
+                "name='" + name + '\'' +
+                ", attributes=" + attributes +
+                '}';
+    }
+}
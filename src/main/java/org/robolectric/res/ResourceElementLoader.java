@@ -0,0 +1,32 @@
+package org.robolectric.res;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.File;
+
+/**
+ * Loads values files one top-level element at a time.
+ *
+ * {@link StaxDocumentLoader} streams elements straight to {@link #processResourceElement}; documents from
+ * {@link DocumentLoader} are walked and handed over the same way.
+ */
+public abstract class ResourceElementLoader extends XmlLoader {
+    @Override
+    protected void processResourceXml(File xmlFile, Document document, XmlContext xmlContext) throws Exception {
+        Element resources = document.getDocumentElement();
+        if (resources == null || !resources.getNodeName().equals("resources")) return;
+
+        for (Node node = resources.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                processResourceElement(ResourceElement.from((Element) node), xmlContext);
+            }
+        }
+    }
+
+    /**
+     * @param element a child of the {@code <resources>} element
+     */
+    protected abstract void processResourceElement(ResourceElement element, XmlContext xmlContext) throws Exception;
+}
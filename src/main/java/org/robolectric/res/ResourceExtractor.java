@@ -2,7 +2,6 @@ package org.robolectric.res;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -11,7 +10,7 @@ public class ResourceExtractor extends ResourceIndex {
     private static final boolean REMAP_RESOURCES = false;
 
     private Set<Class> processedRFiles = new HashSet<Class>();
-    private Integer maxUsedInt = null;
+    private int maxUsedInt;
 
     public ResourceExtractor() {
     }
@@ -42,7 +41,7 @@ public class ResourceExtractor extends ResourceIndex {
 
                   if (!section.equals("styleable")) {
                     String fieldName = field.getName();
-                    ResName resName = new ResName(packageName, section, fieldName);
+                    ResName resName = new ResName(packageName, section, fieldName).intern();
 
                     resourceNameToId.put(resName, value);
 
@@ -65,22 +64,31 @@ public class ResourceExtractor extends ResourceIndex {
     }
 
     @Override
-    public synchronized Integer getResourceId(ResName resName) {
+    public Integer getResourceId(ResName resName) {
         Integer id = resourceNameToId.get(resName);
         if (id == null && "android".equals(resName.namespace)) {
-            if (maxUsedInt == null) {
-                maxUsedInt = resourceIdToResName.isEmpty() ? 0 : Collections.max(resourceIdToResName.keySet());
-            }
-            id = ++maxUsedInt;
-            resourceNameToId.put(resName, id);
-            resourceIdToResName.put(id, resName);
-            System.out.println("INFO: no id mapping found for " + resName.getFullyQualifiedName() + "; assigning " + id);
+            id = assignResourceId(resName);
+        }
+        return id;
+    }
+
+    private synchronized Integer assignResourceId(ResName resName) {
+        Integer id = resourceNameToId.get(resName);
+        if (id != null) return id; // another thread got here first
+
+        if (maxUsedInt == 0 && !resourceIdToResName.isEmpty()) {
+            maxUsedInt = resourceIdToResName.maxKey();
         }
+        id = ++maxUsedInt;
+        resName = resName.intern();
+        resourceIdToResName.put(id, resName);
+        resourceNameToId.put(resName, id);
+        System.out.println("INFO: no id mapping found for " + resName.getFullyQualifiedName() + "; assigning " + id);
         return id;
     }
 
     @Override
-    public synchronized ResName getResName(int resourceId) {
+    public ResName getResName(int resourceId) {
         return resourceIdToResName.get(resourceId);
     }
 }
\ No newline at end of file
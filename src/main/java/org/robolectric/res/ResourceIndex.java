@@ -1,11 +1,11 @@
 package org.robolectric.res;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class ResourceIndex {
-    final Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
-    final Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
+    final Map<ResName, Integer> resourceNameToId = new ConcurrentHashMap<ResName, Integer>();
+    final IntResNameMap resourceIdToResName = new IntResNameMap();
 
     public abstract Integer getResourceId(ResName resName);
 
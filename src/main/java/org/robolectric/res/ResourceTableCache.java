@@ -0,0 +1,839 @@
+package org.robolectric.res;
+
+import org.robolectric.util.Util;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a compact binary copy of each category of resources a {@link PackageResourceLoader} loads from a resource
+ * directory, so later JVMs can read it back with a single sequential read instead of parsing every XML file again.
+ *
+ * Each category gets its own table, which is only trusted by the build of the loader that wrote it (see
+ * {@link #getLoaderVersion()}), and only while the name, size and modification time of every file in
+ * that category's directories are what they were when it was written. Documents (drawable and xml resources) are stored as their DOM trees and rebuilt
+ * without being re-parsed. The {@link ResourceIndex} isn't stored, since it comes from the R class rather than from
+ * the resource directory.
+ *
+ * A cache may be shared by several JVMs at once: tables are written to a temporary file and renamed into place, and a
+ * table that doesn't pass its checks is simply loaded from the XML again. Given a maximum size, the cache deletes its
+ * least recently used tables once they take up more room than that.
+ */
+public class ResourceTableCache {
+    private static final int MAGIC = 0x52525442; // "RRTB"
+    private static final int FORMAT_VERSION = 3;
+    private static final String LOADER_VERSION = findLoaderVersion();
+
+    private static final byte ELEMENT_NODE = 1;
+    private static final byte TEXT_NODE = 2;
+    private static final byte CDATA_NODE = 3;
+
+    private final File cacheDir;
+    private final String tablePrefix;
+    private final long maxSize;
+    private final String loaderVersion;
+
+    public ResourceTableCache(File cacheDir) {
+        this(cacheDir, "", 0);
+    }
+
+    /**
+     * @param tablePrefix prepended to the name of each table file, e.g. to tell which SDK version a table is for
+     * @param maxSize the number of bytes the tables in the cache directory may take up before the least recently used
+     *                ones are deleted, or 0 for no limit
+     */
+    public ResourceTableCache(File cacheDir, String tablePrefix, long maxSize) {
+        this(cacheDir, tablePrefix, maxSize, LOADER_VERSION);
+    }
+
+    ResourceTableCache(File cacheDir, String tablePrefix, long maxSize, String loaderVersion) {
+        this.cacheDir = cacheDir;
+        this.tablePrefix = tablePrefix;
+        this.maxSize = maxSize;
+        this.loaderVersion = loaderVersion;
+    }
+
+    /**
+     * Identifies the build of the code that loads resources and reads and writes tables: a hash of the size and
+     * modification time of the jar it came from, or of its class files when it wasn't loaded from a jar.
+     *
+     * @return the version, or null if the code couldn't be found, in which case nothing is cached
+     */
+    public static String getLoaderVersion() {
+        return LOADER_VERSION;
+    }
+
+    /**
+     * @return true if the loader was filled from a table that's still current for the resource path
+     */
+    boolean load(ResourcePath resourcePath, XResourceLoader loader, XResourceLoader.Category category) {
+        if (loaderVersion == null) return false;
+        File tableFile = tableFileFor(resourcePath, category);
+        if (!tableFile.isFile()) return false;
+
+        ByteBuffer buf;
+        try {
+            buf = readFully(tableFile);
+        } catch (IOException e) {
+            return false; // no problem, we'll just load from the XML
+        }
+
+        if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) return false;
+        try {
+            if (!readRawString(buf).equals(loaderVersion)) return false;
+            if (!readRawString(buf).equals(fingerprintFor(resourcePath, category))) return false;
+            long crc = buf.getLong();
+            if (buf.getInt() != buf.remaining() || crc != crcOf(buf)) return false;
+        } catch (RuntimeException e) {
+            return false; // garbled header; load from the XML and overwrite it
+        }
+
+        try {
+            new Reader(buf).readInto(loader, category);
+        } catch (RuntimeException e) {
+            return false; // no problem, the reader didn't touch the loader; load from the XML and overwrite it
+        }
+        if (maxSize > 0) tableFile.setLastModified(System.currentTimeMillis()); // remember it's been used
+        return true;
+    }
+
+    void save(ResourcePath resourcePath, XResourceLoader loader, XResourceLoader.Category category) {
+        if (loaderVersion == null) return;
+        File tableFile = tableFileFor(resourcePath, category);
+        try {
+            byte[] payload = new Writer().write(loader, category);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            cacheDir.mkdirs();
+            File tmpFile = File.createTempFile(tableFile.getName(), ".tmp", cacheDir);
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeRawString(out, loaderVersion);
+                writeRawString(out, fingerprintFor(resourcePath, category));
+                out.writeLong(crc.getValue());
+                out.writeInt(payload.length);
+                out.write(payload);
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(tableFile)) {
+                tableFile.delete();
+                if (!tmpFile.renameTo(tableFile)) tmpFile.delete();
+            }
+            if (maxSize > 0) evictLeastRecentlyUsed(tableFile);
+        } catch (IOException e) {
+            // no problem, we'll just load from the XML again next time
+        }
+    }
+
+    File tableFileFor(ResourcePath resourcePath, XResourceLoader.Category category) {
+        String key = resourcePath.getPackageName() + "|" + resourcePath.resourceBase.getAbsolutePath();
+        return new File(cacheDir, tablePrefix + "resource-table-" + Util.sha1Hex(utf8(key)) + "-" + category.folderBaseName + ".bin");
+    }
+
+    private void evictLeastRecentlyUsed(File tableToKeep) {
+        File[] tableFiles = cacheDir.listFiles(new FilenameFilter() {
+            @Override public boolean accept(File dir, String name) {
+                return name.endsWith(".bin");
+            }
+        });
+        if (tableFiles == null) return;
+
+        final Map<File, Long> lastModified = new HashMap<File, Long>();
+        for (File tableFile : tableFiles) {
+            lastModified.put(tableFile, tableFile.lastModified());
+        }
+        Arrays.sort(tableFiles, new Comparator<File>() {
+            @Override public int compare(File a, File b) {
+                long aLastModified = lastModified.get(a), bLastModified = lastModified.get(b);
+                return aLastModified > bLastModified ? -1 : aLastModified == bLastModified ? 0 : 1;
+            }
+        });
+
+        long size = 0;
+        for (File tableFile : tableFiles) {
+            size += tableFile.length();
+            if (size > maxSize && !tableFile.equals(tableToKeep)) {
+                tableFile.delete(); // no problem if another JVM is still reading it or already deleted it
+            }
+        }
+    }
+
+    static String fingerprintFor(ResourcePath resourcePath, XResourceLoader.Category category) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(resourcePath.getPackageName()).append('\n');
+        File[] dirs = resourcePath.resourceBase.listFiles(new DirectoryMatchingFileFilter(category.folderBaseName));
+        if (dirs != null) {
+            Arrays.sort(dirs);
+            for (File dir : dirs) {
+                appendFileStats(buf, dir, dir.getName() + "/");
+            }
+        }
+        return Util.sha1Hex(utf8(buf.toString()));
+    }
+
+    private static String findLoaderVersion() {
+        URL url = ResourceTableCache.class.getResource(ResourceTableCache.class.getSimpleName() + ".class");
+        if (url == null) return null;
+        try {
+            StringBuilder buf = new StringBuilder();
+            if (url.getProtocol().equals("jar")) {
+                File jarFile = new File(((JarURLConnection) url.openConnection()).getJarFileURL().toURI());
+                buf.append(jarFile.getName()).append('|').append(jarFile.length()).append('|').append(jarFile.lastModified());
+            } else if (url.getProtocol().equals("file")) {
+                File[] classFiles = new File(url.toURI()).getParentFile().listFiles(new FilenameFilter() {
+                    @Override public boolean accept(File dir, String name) {
+                        return name.endsWith(".class");
+                    }
+                });
+                if (classFiles == null) return null;
+                Arrays.sort(classFiles);
+                for (File classFile : classFiles) {
+                    buf.append(classFile.getName()).append('|').append(classFile.length()).append('|').append(classFile.lastModified()).append('\n');
+                }
+            } else {
+                return null;
+            }
+            return Util.sha1Hex(utf8(buf.toString())).substring(0, 12);
+        } catch (IOException e) {
+            return null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static void appendFileStats(StringBuilder buf, File dir, String prefix) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File file : files) {
+            String path = prefix + file.getName();
+            if (file.isDirectory()) {
+                appendFileStats(buf, file, path + "/");
+            } else {
+                buf.append(path).append('|').append(file.length()).append('|').append(file.lastModified()).append('\n');
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+            while (buf.hasRemaining()) {
+                if (channel.read(buf) < 0) throw new IOException("unexpected end of " + file);
+            }
+            buf.flip();
+            return buf;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long crcOf(ByteBuffer buf) {
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        return crc.getValue();
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void writeRawString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = utf8(s);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readRawString(ByteBuffer buf) {
+        int length = buf.getInt();
+        try {
+            String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, "UTF-8");
+            buf.position(buf.position() + length);
+            return s;
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static abstract class ValueCodec<T> {
+        abstract void write(Writer out, T value) throws IOException;
+
+        abstract T read(Reader in);
+    }
+
+    private static final ValueCodec<String> STRINGS = new ValueCodec<String>() {
+        @Override void write(Writer out, String value) throws IOException {
+            out.writeString(value);
+        }
+
+        @Override String read(Reader in) {
+            return in.readString();
+        }
+    };
+
+    private static final ValueCodec<PluralResourceLoader.PluralRules> PLURALS = new ValueCodec<PluralResourceLoader.PluralRules>() {
+        @Override void write(Writer out, PluralResourceLoader.PluralRules value) throws IOException {
+            out.data.writeInt(value.plurals.size());
+            for (PluralResourceLoader.Plural plural : value.plurals) {
+                out.writeString(plural.quantity);
+                out.writeString(plural.string);
+            }
+        }
+
+        @Override PluralResourceLoader.PluralRules read(Reader in) {
+            PluralResourceLoader.PluralRules rules = new PluralResourceLoader.PluralRules();
+            for (int i = in.buf.getInt(); i > 0; i--) {
+                rules.add(new PluralResourceLoader.Plural(in.readString(), in.readString()));
+            }
+            return rules;
+        }
+    };
+
+    private static final ValueCodec<ViewNode> VIEW_NODES = new ValueCodec<ViewNode>() {
+        @Override void write(Writer out, ViewNode value) throws IOException {
+            out.writeString(value.getName());
+            out.writeAttributes(value.getAttributes());
+            out.writeXmlContext(value.getXmlContext());
+            out.data.writeBoolean(value.shouldRequestFocusOverride());
+            List<ViewNode> children = value.getChildren();
+            out.data.writeInt(children.size());
+            for (ViewNode child : children) {
+                write(out, child);
+            }
+        }
+
+        @Override ViewNode read(Reader in) {
+            String name = in.readString();
+            List<Attribute> attributes = in.readAttributes();
+            XmlLoader.XmlContext xmlContext = in.readXmlContext();
+            boolean requestFocusOverride = in.buf.get() != 0;
+            int childCount = in.buf.getInt();
+            List<ViewNode> children = new ArrayList<ViewNode>(childCount);
+            for (int i = 0; i < childCount; i++) {
+                children.add(read(in));
+            }
+            return new ViewNode(name, attributes, xmlContext, children, requestFocusOverride);
+        }
+    };
+
+    private static final ValueCodec<MenuNode> MENU_NODES = new ValueCodec<MenuNode>() {
+        @Override void write(Writer out, MenuNode value) throws IOException {
+            out.writeString(value.getName());
+            out.writeAttributes(value.getAttributes());
+            out.data.writeInt(value.getChildren().size());
+            for (MenuNode child : value.getChildren()) {
+                write(out, child);
+            }
+        }
+
+        @Override MenuNode read(Reader in) {
+            MenuNode menuNode = new MenuNode(in.readString(), in.readAttributes());
+            for (int i = in.buf.getInt(); i > 0; i--) {
+                menuNode.addChild(read(in));
+            }
+            return menuNode;
+        }
+    };
+
+    private static final ValueCodec<PreferenceNode> PREFERENCE_NODES = new ValueCodec<PreferenceNode>() {
+        @Override void write(Writer out, PreferenceNode value) throws IOException {
+            out.writeString(value.getName());
+            out.writeAttributes(value.getAttributes());
+            out.data.writeInt(value.getChildren().size());
+            for (PreferenceNode child : value.getChildren()) {
+                write(out, child);
+            }
+        }
+
+        @Override PreferenceNode read(Reader in) {
+            PreferenceNode preferenceNode = new PreferenceNode(in.readString(), in.readAttributes());
+            for (int i = in.buf.getInt(); i > 0; i--) {
+                preferenceNode.addChild(read(in));
+            }
+            return preferenceNode;
+        }
+    };
+
+    private static final ValueCodec<Document> DOCUMENTS = new ValueCodec<Document>() {
+        @Override void write(Writer out, Document value) throws IOException {
+            out.writeDocument(value);
+        }
+
+        @Override Document read(Reader in) {
+            return in.readDocument();
+        }
+    };
+
+    private static final ValueCodec<DrawableNode> DRAWABLE_NODES = new ValueCodec<DrawableNode>() {
+        @Override void write(Writer out, DrawableNode value) throws IOException {
+            if (value instanceof DrawableNode.Xml) {
+                DrawableNode.Xml xml = (DrawableNode.Xml) value;
+                out.data.writeByte(0);
+                out.writeDocument(xml.document);
+                out.writeXmlContext(xml.xmlContext);
+            } else {
+                out.data.writeByte(1);
+                out.data.writeBoolean(((DrawableNode.ImageFile) value).isNinePatch);
+            }
+        }
+
+        @Override DrawableNode read(Reader in) {
+            if (in.buf.get() == 0) {
+                Document document = in.readDocument();
+                return new DrawableNode.Xml(document, in.readXmlContext());
+            } else {
+                return new DrawableNode.ImageFile(in.buf.get() != 0);
+            }
+        }
+    };
+
+    private static class Writer {
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final List<String> stringList = new ArrayList<String>();
+        private final Map<XmlLoader.XmlContext, Integer> xmlContexts = new IdentityHashMap<XmlLoader.XmlContext, Integer>();
+        private final List<XmlLoader.XmlContext> xmlContextList = new ArrayList<XmlLoader.XmlContext>();
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(body);
+
+        byte[] write(XResourceLoader loader, XResourceLoader.Category category) throws IOException {
+            switch (category) {
+                case VALUES:
+                    writeBundle(loader.booleanResolver, STRINGS);
+                    writeBundle(loader.colorResolver, STRINGS);
+                    writeBundle(loader.dimenResolver, STRINGS);
+                    writeBundle(loader.integerResolver, STRINGS);
+                    writeBundle(loader.pluralsResolver, PLURALS);
+                    writeBundle(loader.stringResolver, STRINGS);
+                    writeAttrs(loader.attrResourceLoader);
+                    break;
+                case LAYOUT:
+                    writeBundle(loader.viewNodes, VIEW_NODES);
+                    break;
+                case MENU:
+                    writeBundle(loader.menuNodes, MENU_NODES);
+                    break;
+                case DRAWABLE:
+                    writeBundle(loader.drawableNodes, DRAWABLE_NODES);
+                    break;
+                case XML:
+                    writeBundle(loader.preferenceNodes, PREFERENCE_NODES);
+                    writeBundle(loader.xmlDocuments, DOCUMENTS);
+                    break;
+                default:
+                    throw new IllegalArgumentException(category.toString());
+            }
+            data.flush();
+
+            // the string and context tables go first, so the reader can resolve references as it goes
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(body.size() + stringList.size() * 16);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeInt(stringList.size());
+            for (String s : stringList) {
+                writeRawString(out, s);
+            }
+            out.writeInt(xmlContextList.size());
+            for (XmlLoader.XmlContext xmlContext : xmlContextList) {
+                out.writeInt(xmlContext.packageName == null ? -1 : strings.get(xmlContext.packageName));
+                File xmlFile = xmlContext.getXmlFile();
+                out.writeInt(xmlFile == null ? -1 : strings.get(xmlFile.getPath()));
+            }
+            body.writeTo(out);
+            out.close();
+            return payload.toByteArray();
+        }
+
+        private <T> void writeBundle(ResBundle<T> bundle, ValueCodec<T> codec) throws IOException {
+            Map<ResName, ResBundle.Values<T>> values = bundle.values();
+            data.writeInt(values.size());
+            for (Map.Entry<ResName, ResBundle.Values<T>> entry : values.entrySet()) {
+                writeResName(entry.getKey());
+                data.writeInt(entry.getValue().size());
+                for (ResBundle.Value<T> value : entry.getValue()) {
+                    writeValueHeader(value);
+                    codec.write(this, value.value);
+                }
+            }
+
+            Map<ResName, ResBundle.Values<List<T>>> arrayValues = bundle.arrayValues();
+            data.writeInt(arrayValues.size());
+            for (Map.Entry<ResName, ResBundle.Values<List<T>>> entry : arrayValues.entrySet()) {
+                writeResName(entry.getKey());
+                data.writeInt(entry.getValue().size());
+                for (ResBundle.Value<List<T>> value : entry.getValue()) {
+                    writeValueHeader(value);
+                    data.writeInt(value.value.size());
+                    for (T item : value.value) {
+                        codec.write(this, item);
+                    }
+                }
+            }
+        }
+
+        private void writeValueHeader(ResBundle.Value<?> value) throws IOException {
+            // Value wraps its qualifiers in dashes; store them the way its constructor expects them
+            writeString(value.qualifiers.substring(1, value.qualifiers.length() - 1));
+            writeXmlContext(value.xmlContext);
+        }
+
+        private void writeAttrs(AttrResourceLoader attrResourceLoader) throws IOException {
+            data.writeBoolean(attrResourceLoader.resolved);
+
+            data.writeInt(attrResourceLoader.enums.size());
+            for (AttrResourceLoader.EnumDef enumDef : attrResourceLoader.enums.values()) {
+                writeString(enumDef.name);
+                writeStringMap(enumDef.values);
+            }
+
+            data.writeInt(attrResourceLoader.enumRefs.size());
+            for (Map.Entry<String, AttrResourceLoader.EnumRef> entry : attrResourceLoader.enumRefs.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue().viewName);
+                writeString(entry.getValue().enumName);
+            }
+
+            writeStringMap(attrResourceLoader.classEnumToValue);
+
+            data.writeInt(attrResourceLoader.knownClassEnums.size());
+            for (String knownClassEnum : attrResourceLoader.knownClassEnums) {
+                writeString(knownClassEnum);
+            }
+        }
+
+        private void writeStringMap(Map<String, String> map) throws IOException {
+            data.writeInt(map.size());
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        void writeResName(ResName resName) throws IOException {
+            writeString(resName.namespace);
+            writeString(resName.type);
+            writeString(resName.name);
+        }
+
+        void writeAttributes(List<Attribute> attributes) throws IOException {
+            data.writeInt(attributes.size());
+            for (Attribute attribute : attributes) {
+                writeResName(attribute.resName);
+                writeString(attribute.value);
+                writeString(attribute.contextPackageName);
+            }
+        }
+
+        void writeXmlContext(XmlLoader.XmlContext xmlContext) throws IOException {
+            Integer index = xmlContexts.get(xmlContext);
+            if (index == null) {
+                index = xmlContextList.size();
+                xmlContexts.put(xmlContext, index);
+                xmlContextList.add(xmlContext);
+                if (xmlContext.packageName != null) intern(xmlContext.packageName);
+                if (xmlContext.getXmlFile() != null) intern(xmlContext.getXmlFile().getPath());
+            }
+            data.writeInt(index);
+        }
+
+        void writeDocument(Document document) throws IOException {
+            writeNode(document.getDocumentElement());
+        }
+
+        private void writeNode(Node node) throws IOException {
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    data.writeByte(ELEMENT_NODE);
+                    writeString(node.getNamespaceURI());
+                    writeString(node.getNodeName());
+
+                    NamedNodeMap attributes = node.getAttributes();
+                    data.writeInt(attributes.getLength());
+                    for (int i = 0; i < attributes.getLength(); i++) {
+                        Node attr = attributes.item(i);
+                        writeString(attr.getNamespaceURI());
+                        writeString(attr.getNodeName());
+                        writeString(attr.getNodeValue());
+                    }
+
+                    List<Node> children = new ArrayList<Node>();
+                    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                        short type = child.getNodeType();
+                        if (type == Node.ELEMENT_NODE || type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+                            children.add(child);
+                        }
+                    }
+                    data.writeInt(children.size());
+                    for (Node child : children) {
+                        writeNode(child);
+                    }
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    data.writeByte(CDATA_NODE);
+                    writeString(node.getNodeValue());
+                    break;
+                default:
+                    data.writeByte(TEXT_NODE);
+                    writeString(node.getNodeValue());
+                    break;
+            }
+        }
+
+        void writeString(String s) throws IOException {
+            data.writeInt(s == null ? -1 : intern(s));
+        }
+
+        private int intern(String s) {
+            Integer index = strings.get(s);
+            if (index == null) {
+                index = stringList.size();
+                strings.put(s, index);
+                stringList.add(s);
+            }
+            return index;
+        }
+    }
+
+    private static class Reader {
+        final ByteBuffer buf;
+        private final String[] strings;
+        private final XmlLoader.XmlContext[] xmlContexts;
+        private DocumentBuilder documentBuilder;
+        // values are only put into the loader once the whole table has been read, so a bad table leaves it untouched
+        private final List<Runnable> puts = new ArrayList<Runnable>();
+
+        Reader(ByteBuffer buf) {
+            this.buf = buf;
+
+            strings = new String[buf.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readRawString(buf);
+            }
+
+            xmlContexts = new XmlLoader.XmlContext[buf.getInt()];
+            for (int i = 0; i < xmlContexts.length; i++) {
+                String packageName = readString();
+                String path = readString();
+                xmlContexts[i] = new XmlLoader.XmlContext(packageName, path == null ? null : new File(path));
+            }
+        }
+
+        void readInto(XResourceLoader loader, XResourceLoader.Category category) {
+            switch (category) {
+                case VALUES:
+                    readBundle(loader.booleanResolver, STRINGS);
+                    readBundle(loader.colorResolver, STRINGS);
+                    readBundle(loader.dimenResolver, STRINGS);
+                    readBundle(loader.integerResolver, STRINGS);
+                    readBundle(loader.pluralsResolver, PLURALS);
+                    readBundle(loader.stringResolver, STRINGS);
+                    readAttrs(loader.attrResourceLoader);
+                    break;
+                case LAYOUT:
+                    readBundle(loader.viewNodes, VIEW_NODES);
+                    break;
+                case MENU:
+                    readBundle(loader.menuNodes, MENU_NODES);
+                    break;
+                case DRAWABLE:
+                    readBundle(loader.drawableNodes, DRAWABLE_NODES);
+                    break;
+                case XML:
+                    readBundle(loader.preferenceNodes, PREFERENCE_NODES);
+                    readBundle(loader.xmlDocuments, DOCUMENTS);
+                    break;
+                default:
+                    throw new IllegalArgumentException(category.toString());
+            }
+            if (buf.hasRemaining()) throw new IllegalStateException(buf.remaining() + " bytes left over");
+
+            for (Runnable put : puts) {
+                put.run();
+            }
+        }
+
+        private <T> void readBundle(final ResBundle<T> bundle, ValueCodec<T> codec) {
+            for (int i = buf.getInt(); i > 0; i--) {
+                final ResName resName = readResName();
+                for (int j = buf.getInt(); j > 0; j--) {
+                    String qualifiers = readString();
+                    XmlLoader.XmlContext xmlContext = readXmlContext();
+                    final ResBundle.Value<T> value = new ResBundle.Value<T>(qualifiers, codec.read(this), xmlContext);
+                    puts.add(new Runnable() {
+                        @Override public void run() {
+                            bundle.putValue(resName, value);
+                        }
+                    });
+                }
+            }
+
+            for (int i = buf.getInt(); i > 0; i--) {
+                ResName resName = readResName();
+                for (int j = buf.getInt(); j > 0; j--) {
+                    String qualifiers = readString();
+                    XmlLoader.XmlContext xmlContext = readXmlContext();
+                    int count = buf.getInt();
+                    List<T> items = new ArrayList<T>(count);
+                    for (int k = 0; k < count; k++) {
+                        items.add(codec.read(this));
+                    }
+                    final ResBundle.Value<List<T>> value = new ResBundle.Value<List<T>>(qualifiers, items, xmlContext);
+                    puts.add(new Runnable() {
+                        @Override public void run() {
+                            bundle.putArrayValue(resName, value);
+                        }
+                    });
+                }
+            }
+        }
+
+        private void readAttrs(final AttrResourceLoader attrResourceLoader) {
+            final boolean resolved = buf.get() != 0;
+
+            final Map<String, AttrResourceLoader.EnumDef> enums = new HashMap<String, AttrResourceLoader.EnumDef>();
+            for (int i = buf.getInt(); i > 0; i--) {
+                AttrResourceLoader.EnumDef enumDef = new AttrResourceLoader.EnumDef(readString());
+                readStringMap(enumDef.values);
+                enums.put(enumDef.name, enumDef);
+            }
+
+            final Map<String, AttrResourceLoader.EnumRef> enumRefs = new HashMap<String, AttrResourceLoader.EnumRef>();
+            for (int i = buf.getInt(); i > 0; i--) {
+                String key = readString();
+                String viewName = readString();
+                enumRefs.put(key, new AttrResourceLoader.EnumRef(viewName, readString()));
+            }
+
+            final Map<String, String> classEnumToValue = new HashMap<String, String>();
+            readStringMap(classEnumToValue);
+
+            final List<String> knownClassEnums = new ArrayList<String>();
+            for (int i = buf.getInt(); i > 0; i--) {
+                knownClassEnums.add(readString());
+            }
+
+            puts.add(new Runnable() {
+                @Override public void run() {
+                    attrResourceLoader.resolved = resolved;
+                    attrResourceLoader.enums.putAll(enums);
+                    attrResourceLoader.enumRefs.putAll(enumRefs);
+                    attrResourceLoader.classEnumToValue.putAll(classEnumToValue);
+                    attrResourceLoader.knownClassEnums.addAll(knownClassEnums);
+                }
+            });
+        }
+
+        private void readStringMap(Map<String, String> map) {
+            for (int i = buf.getInt(); i > 0; i--) {
+                String key = readString();
+                map.put(key, readString());
+            }
+        }
+
+        ResName readResName() {
+            String namespace = readString();
+            String type = readString();
+            return new ResName(namespace, type, readString()).intern();
+        }
+
+        List<Attribute> readAttributes() {
+            int count = buf.getInt();
+            List<Attribute> attributes = new ArrayList<Attribute>(count);
+            for (int i = 0; i < count; i++) {
+                ResName resName = readResName();
+                String value = readString();
+                attributes.add(new Attribute(resName, value, readString()));
+            }
+            return attributes;
+        }
+
+        XmlLoader.XmlContext readXmlContext() {
+            return xmlContexts[buf.getInt()];
+        }
+
+        Document readDocument() {
+            if (documentBuilder == null) {
+                DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+                documentBuilderFactory.setNamespaceAware(true);
+                try {
+                    documentBuilder = documentBuilderFactory.newDocumentBuilder();
+                } catch (ParserConfigurationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            Document document = documentBuilder.newDocument();
+            buf.get(); // always an element
+            document.appendChild(readElement(document));
+            return document;
+        }
+
+        private Element readElement(Document document) {
+            String namespaceUri = readString();
+            Element element = document.createElementNS(namespaceUri, readString());
+
+            for (int i = buf.getInt(); i > 0; i--) {
+                String attrNamespaceUri = readString();
+                Attr attr = document.createAttributeNS(attrNamespaceUri, readString());
+                attr.setValue(readString());
+                element.setAttributeNodeNS(attr);
+            }
+
+            for (int i = buf.getInt(); i > 0; i--) {
+                switch (buf.get()) {
+                    case ELEMENT_NODE:
+                        element.appendChild(readElement(document));
+                        break;
+                    case CDATA_NODE:
+                        element.appendChild(document.createCDATASection(readString()));
+                        break;
+                    default:
+                        element.appendChild(document.createTextNode(readString()));
+                        break;
+                }
+            }
+            return element;
+        }
+
+        String readString() {
+            int index = buf.getInt();
+            return index == -1 ? null : strings[index];
+        }
+    }
+}
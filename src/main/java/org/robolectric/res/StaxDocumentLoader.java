@@ -0,0 +1,73 @@
+package org.robolectric.res;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads values files with a StAX pull parser and hands each child of their {@code <resources>} element to
+ * {@link ResourceElementLoader}s, without building a DOM for the file or evaluating any XPath.
+ *
+ * Only the resource elements of each file are held, and only until the loaders have seen them.
+ *
+ * @see ParallelFileLoader
+ */
+public class StaxDocumentLoader extends ParallelFileLoader<List<ResourceElement>> {
+    private final ResourceElementLoader[] loaders;
+    private final ThreadLocal<XMLInputFactory> inputFactories = new ThreadLocal<XMLInputFactory>() {
+        @Override protected XMLInputFactory initialValue() {
+            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            return inputFactory;
+        }
+    };
+
+    public StaxDocumentLoader(ResourceElementLoader... loaders) {
+        this.loaders = loaders;
+    }
+
+    @Override
+    List<ResourceElement> parse(File xmlFile) throws Exception {
+        List<ResourceElement> elements = new ArrayList<ResourceElement>();
+        InputStream in = new BufferedInputStream(new FileInputStream(xmlFile));
+        try {
+            XMLStreamReader reader = inputFactories.get().createXMLStreamReader(xmlFile.toURI().toString(), in);
+            try {
+                reader.nextTag();
+                if (!reader.getLocalName().equals("resources") || hasPrefix(reader)) return elements;
+
+                while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+                    if (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                        elements.add(ResourceElement.read(reader));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+        return elements;
+    }
+
+    @Override
+    void process(File xmlFile, List<ResourceElement> elements, String packageName) throws Exception {
+        XmlLoader.XmlContext xmlContext = new XmlLoader.XmlContext(packageName, xmlFile);
+        for (ResourceElement element : elements) {
+            for (ResourceElementLoader loader : loaders) {
+                loader.processResourceElement(element, xmlContext);
+            }
+        }
+    }
+
+    private static boolean hasPrefix(XMLStreamReader reader) {
+        return reader.getPrefix() != null && reader.getPrefix().length() > 0;
+    }
+}
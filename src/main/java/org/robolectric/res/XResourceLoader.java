@@ -5,14 +5,22 @@ import org.w3c.dom.Document;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
 
 abstract class XResourceLoader implements ResourceLoader {
+    private static final Logger LOGGER = Logger.getLogger(XResourceLoader.class.getName());
+
     private final ResourceIndex resourceIndex;
 
     final List<RawResourceLoader> rawResourceLoaders = new ArrayList<RawResourceLoader>();
 
-    boolean isInitialized = false;
+    private volatile EnumSet<Category> loadedCategories = EnumSet.noneOf(Category.class);
 
     final AttrResourceLoader attrResourceLoader = new AttrResourceLoader();
     final Resolver<Boolean> booleanResolver = new BooleanResolver();
@@ -27,32 +35,84 @@ abstract class XResourceLoader implements ResourceLoader {
     final ResBundle<PreferenceNode> preferenceNodes = new ResBundle<PreferenceNode>();
     final ResBundle<Document> xmlDocuments = new ResBundle<Document>();
 
+    /**
+     * The kinds of resources that are loaded together, each the first time one of them is asked for.
+     */
+    enum Category {
+        VALUES("values"), LAYOUT("layout"), MENU("menu"), DRAWABLE("drawable"), XML("xml"), RAW("raw");
+
+        final String folderBaseName;
+
+        Category(String folderBaseName) {
+            this.folderBaseName = folderBaseName;
+        }
+    }
+
     protected XResourceLoader(ResourceIndex resourceIndex) {
         this.resourceIndex = resourceIndex;
     }
 
-    abstract void doInitialize();
+    abstract void doInitialize(Category category);
 
+    /**
+     * Loads every category of resources.
+     */
     void initialize() {
-        if (isInitialized) return;
-        doInitialize();
-        isInitialized = true;
+        for (Category category : Category.values()) {
+            initialize(category);
+        }
+    }
+
+    void initialize(Category category) {
+        if (loadedCategories.contains(category)) return;
 
-        makeImmutable();
+        synchronized (this) {
+            if (loadedCategories.contains(category)) return;
+            doInitialize(category);
+            makeImmutable(category);
+
+            EnumSet<Category> newLoadedCategories = EnumSet.copyOf(loadedCategories);
+            newLoadedCategories.add(category);
+            loadedCategories = newLoadedCategories;
+        }
     }
 
-    protected void makeImmutable() {
-        booleanResolver.makeImmutable();
-        colorResolver.makeImmutable();
-        dimenResolver.makeImmutable();
-        integerResolver.makeImmutable();
-        pluralsResolver.makeImmutable();
-        stringResolver.makeImmutable();
-        viewNodes.makeImmutable();
-        menuNodes.makeImmutable();
-        drawableNodes.makeImmutable();
-        preferenceNodes.makeImmutable();
-        xmlDocuments.makeImmutable();
+    boolean isInitialized(Category category) {
+        return loadedCategories.contains(category);
+    }
+
+    protected void makeImmutable(Category category) {
+        switch (category) {
+            case VALUES:
+                booleanResolver.makeImmutable();
+                colorResolver.makeImmutable();
+                dimenResolver.makeImmutable();
+                integerResolver.makeImmutable();
+                pluralsResolver.makeImmutable();
+                stringResolver.makeImmutable();
+
+                booleanResolver.checkReferences();
+                colorResolver.checkReferences();
+                dimenResolver.checkReferences();
+                integerResolver.checkReferences();
+                stringResolver.checkReferences();
+                break;
+            case LAYOUT:
+                viewNodes.makeImmutable();
+                break;
+            case MENU:
+                menuNodes.makeImmutable();
+                break;
+            case DRAWABLE:
+                drawableNodes.makeImmutable();
+                break;
+            case XML:
+                preferenceNodes.makeImmutable();
+                xmlDocuments.makeImmutable();
+                break;
+            default:
+                break;
+        }
     }
 
     @Override
@@ -62,20 +122,20 @@ abstract class XResourceLoader implements ResourceLoader {
 
     @Override
     public int getColorValue(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
         Integer value = colorResolver.resolve(resName, qualifiers);
         return value == null ? -1 : value;
     }
 
     @Override
     public String getStringValue(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
         return stringResolver.resolve(resName, qualifiers);
     }
 
     @Override
     public String getPluralStringValue(ResName resName, int quantity, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
         PluralResourceLoader.PluralRules pluralRules = pluralsResolver.get(resName, qualifiers);
         if (pluralRules == null) return null;
 
@@ -86,36 +146,37 @@ abstract class XResourceLoader implements ResourceLoader {
 
     @Override
     public float getDimenValue(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
         return dimenResolver.resolve(resName, qualifiers);
     }
 
     @Override
     public int getIntegerValue(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
         return integerResolver.resolve(resName, qualifiers);
     }
 
     @Override
     public boolean getBooleanValue(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
         return booleanResolver.resolve(resName, qualifiers);
     }
 
     @Override
     public Document getXml(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.XML);
         return xmlDocuments.get(resName, qualifiers);
     }
 
     @Override
     public DrawableNode getDrawableNode(ResName resName, String qualifiers) {
+        initialize(Category.DRAWABLE);
         return drawableNodes.get(resName, qualifiers);
     }
 
     @Override
     public InputStream getRawValue(int id) {
-        initialize();
+        initialize(Category.RAW);
 
         for (RawResourceLoader rawResourceLoader : rawResourceLoaders) {
             InputStream stream = rawResourceLoader.getValue(id);
@@ -127,7 +188,7 @@ abstract class XResourceLoader implements ResourceLoader {
 
     @Override
     public String[] getStringArrayValue(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
 
         if (resName == null) return null;
         resName = new ResName(resName.namespace, "string-array", resName.name); // ugh
@@ -137,7 +198,7 @@ abstract class XResourceLoader implements ResourceLoader {
 
     @Override
     public int[] getIntegerArrayValue(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.VALUES);
 
         if (resName == null) return null;
         resName = new ResName(resName.namespace, "integer-array", resName.name); // ugh
@@ -156,21 +217,21 @@ abstract class XResourceLoader implements ResourceLoader {
 
     @Override
     public PreferenceNode getPreferenceNode(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.XML);
 
         return preferenceNodes.get(resName, qualifiers);
     }
 
     @Override
     public ViewNode getLayoutViewNode(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.LAYOUT);
         if (resName == null) return null;
         return viewNodes.get(resName, qualifiers);
     }
 
     @Override
     public MenuNode getMenuNode(ResName resName, String qualifiers) {
-        initialize();
+        initialize(Category.MENU);
         if (resName == null) return null;
         return menuNodes.get(resName, qualifiers);
     }
@@ -182,24 +243,54 @@ abstract class XResourceLoader implements ResourceLoader {
 
     @Override
     public boolean hasAttributeFor(Class<? extends View> viewClass, String namespace, String attribute) {
-        initialize();
+        initialize(Category.VALUES);
         return attrResourceLoader.hasAttributeFor(viewClass, namespace, attribute);
     }
 
     @Override
     public String convertValueToEnum(Class<? extends View> viewClass, String namespace, String attribute, String part) {
-        initialize();
+        initialize(Category.VALUES);
         return attrResourceLoader.convertValueToEnum(viewClass, namespace, attribute, part);
     }
 
     abstract static class Resolver<T> extends ResBundle<String> {
+        private static final Object NULL = new Object();
+
+        // once immutable: resolved values and arrays by qualifiers and name, with any reference chains followed; NULL
+        // stands in for a name that resolves to null
+        private final ConcurrentMap<String, Map<ResName, Object>> resolved = new ConcurrentHashMap<String, Map<ResName, Object>>();
+        private final ConcurrentMap<String, Map<ResName, Object>> resolvedArrays = new ConcurrentHashMap<String, Map<ResName, Object>>();
+
         public T resolve(ResName resName, String qualifiers) {
-            Value<String> value = getValue(resName, qualifiers);
-            if (value == null) return null;
-            return resolveValue(qualifiers, value.value, value.xmlContext.packageName);
+            if (resName == null) return null;
+            if (!isImmutable()) return convertOrNull(followReferences(resName, qualifiers));
+
+            Map<ResName, Object> resolvedForQualifiers = resolvedFor(resolved, qualifiers);
+            Object value = resolvedForQualifiers.get(resName);
+            if (value == null) {
+                T convertedValue = convertOrNull(followReferences(resName, qualifiers));
+                value = convertedValue == null ? NULL : convertedValue;
+                resolvedForQualifiers.put(resName, value);
+            }
+            //noinspection unchecked
+            return value == NULL ? null : (T) value;
         }
 
         public List<T> resolveArray(ResName resName, String qualifiers) {
+            if (!isImmutable()) return resolveArrayValue(resName, qualifiers);
+
+            Map<ResName, Object> resolvedForQualifiers = resolvedFor(resolvedArrays, qualifiers);
+            Object items = resolvedForQualifiers.get(resName);
+            if (items == null) {
+                List<T> resolvedItems = resolveArrayValue(resName, qualifiers);
+                items = resolvedItems == null ? NULL : Collections.unmodifiableList(resolvedItems);
+                resolvedForQualifiers.put(resName, items);
+            }
+            //noinspection unchecked
+            return items == NULL ? null : (List<T>) items;
+        }
+
+        private List<T> resolveArrayValue(ResName resName, String qualifiers) {
             Value<List<String>> value = getListValue(resName, qualifiers);
             if (value == null) return null;
 
@@ -213,16 +304,83 @@ abstract class XResourceLoader implements ResourceLoader {
         T resolveValue(String qualifiers, String value, String packageName) {
             if (value == null) return null;
             if (value.startsWith("@")) {
-                ResName resName = new ResName(ResName.qualifyResourceName(value.substring(1), packageName));
-                return resolve(resName, qualifiers);
+                return resolve(referencedName(value, packageName), qualifiers);
             } else {
                 return convert(value);
             }
         }
 
+        /**
+         * Follows the chain of references from every reference in the bundle, as seen with that reference's own
+         * qualifiers, so reference cycles are logged when the resources are loaded rather than only turning up the
+         * first time someone asks for one. Asking for a resource in a cycle still throws.
+         *
+         * @return a description of each cycle found
+         */
+        List<String> checkReferences() {
+            List<String> cycles = new ArrayList<String>();
+            for (Map.Entry<ResName, Values<String>> entry : values().entrySet()) {
+                for (Value<String> value : entry.getValue()) {
+                    if (!value.value.startsWith("@")) continue;
+                    try {
+                        followReferences(entry.getKey(), value.qualifiers.substring(1, value.qualifiers.length() - 1));
+                    } catch (IllegalStateException e) {
+                        // no problem, it isn't a reference we understand; it'll fail if anyone asks for it
+                    } catch (ReferenceCycleException e) {
+                        LOGGER.warning(e.getMessage());
+                        cycles.add(e.getMessage());
+                    }
+                }
+            }
+            return cycles;
+        }
+
+        /**
+         * @return the first value in the chain that isn't a reference, or null if the chain ends at a missing value
+         */
+        private String followReferences(ResName resName, String qualifiers) {
+            Value<String> value = getValue(resName, qualifiers);
+            List<ResName> chain = null;
+            while (value != null && value.value.startsWith("@")) {
+                if (chain == null) chain = new ArrayList<ResName>();
+                chain.add(resName);
+                resName = referencedName(value.value, value.xmlContext.packageName);
+                if (chain.contains(resName)) {
+                    chain.add(resName);
+                    throw new ReferenceCycleException("reference cycle for qualifiers \"" + qualifiers + "\": " + chain);
+                }
+                value = getValue(resName, qualifiers);
+            }
+            return value == null ? null : value.value;
+        }
+
+        private T convertOrNull(String rawValue) {
+            return rawValue == null ? null : convert(rawValue);
+        }
+
+        private static ResName referencedName(String reference, String packageName) {
+            return new ResName(ResName.qualifyResourceName(reference.substring(1), packageName));
+        }
+
+        private static Map<ResName, Object> resolvedFor(ConcurrentMap<String, Map<ResName, Object>> resolved, String qualifiers) {
+            Map<ResName, Object> resolvedForQualifiers = resolved.get(qualifiers);
+            if (resolvedForQualifiers == null) {
+                // racing threads at worst resolve the same name twice
+                resolved.putIfAbsent(qualifiers, new ConcurrentHashMap<ResName, Object>());
+                resolvedForQualifiers = resolved.get(qualifiers);
+            }
+            return resolvedForQualifiers;
+        }
+
         abstract T convert(String rawValue);
     }
 
+    private static class ReferenceCycleException extends RuntimeException {
+        ReferenceCycleException(String message) {
+            super(message);
+        }
+    }
+
     private static class BooleanResolver extends Resolver<Boolean> {
         @Override
         Boolean convert(String rawValue) {
@@ -24,6 +24,10 @@ public abstract class XmlLoader {
             this.xmlFile = xmlFile;
         }
 
+        public File getXmlFile() {
+            return xmlFile;
+        }
+
         public String getQualifiers() {
             String parentDir = xmlFile.getParentFile().getName();
             Matcher matcher = DIR_QUALIFIER_PATTERN.matcher(parentDir);
@@ -19,13 +19,29 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.robolectric.Robolectric.shadowOf;
 
+/**
+ * Inflates layouts from their {@link ViewNode}s. The first time a layout is inflated, its tree of view nodes is compiled
+ * into a plan with the view classes and constructors already looked up, which is kept for as long as the view nodes
+ * are, so inflating the same layout again (list items, recreated activities) doesn't repeat the reflection.
+ */
 public class LayoutBuilder {
     public static final ResName ATTR_LAYOUT = new ResName(":attr/layout");
 
+    private static final Map<ResourceLoader, Map<ViewNode, InflationPlan>> PLANS = new WeakHashMap<ResourceLoader, Map<ViewNode, InflationPlan>>();
+    // layouts inflated with extra attributes, by the loader's view node and then the attributes; keeping the merged
+    // node keeps its plan too
+    private static final Map<ViewNode, Map<List<Attribute>, ViewNode>> MERGED_VIEW_NODES = new WeakHashMap<ViewNode, Map<List<Attribute>, ViewNode>>();
+    private static int compiledPlanCount; // guarded by PLANS
+    private static volatile Method onFinishInflate;
+
     private final ResourceLoader resourceLoader;
 
     public LayoutBuilder(ResourceLoader resourceLoader) {
@@ -33,22 +49,54 @@ public class LayoutBuilder {
     }
 
     private View doInflate(Context context, ViewNode viewNode, ViewGroup parent, String qualifiers) {
-        if (viewNode.isInclude()) {
-            List<Attribute> viewNodeAttributes = viewNode.getAttributes();
-            Attribute layoutAttribute = Attribute.find(viewNodeAttributes, ATTR_LAYOUT);
-            ResName resName = new ResName(layoutAttribute.qualifiedValue());
-            return inflateView(context, resName, viewNodeAttributes, parent, qualifiers);
-        } else {
-            View view = create(viewNode, context, parent);
+        return planFor(viewNode).inflate(this, context, parent, qualifiers);
+    }
 
-            for (ViewNode child : viewNode.getChildren()) {
-                doInflate(context, child, (ViewGroup) view, qualifiers);
+    private InflationPlan planFor(ViewNode viewNode) {
+        synchronized (PLANS) {
+            Map<ViewNode, InflationPlan> plans = PLANS.get(resourceLoader);
+            if (plans == null) {
+                plans = new WeakHashMap<ViewNode, InflationPlan>();
+                PLANS.put(resourceLoader, plans);
             }
-
-            if (view != null) {
-                invokeOnFinishInflate(view);
+            InflationPlan plan = plans.get(viewNode);
+            if (plan == null) {
+                plan = compile(viewNode);
+                plans.put(viewNode, plan);
+                compiledPlanCount++;
             }
-            return view;
+            return plan;
+        }
+    }
+
+    /**
+     * @return how many layouts have been compiled into plans so far, so tests can check that inflating a layout again
+     * reuses its plan
+     */
+    public static int getCompiledPlanCount() {
+        synchronized (PLANS) {
+            return compiledPlanCount;
+        }
+    }
+
+    private InflationPlan compile(ViewNode viewNode) {
+        if (viewNode.isInclude()) {
+            Attribute layoutAttribute = Attribute.find(viewNode.getAttributes(), ATTR_LAYOUT);
+            return new IncludePlan(new ResName(layoutAttribute.qualifiedValue()), viewNode.getAttributes());
+        }
+
+        List<InflationPlan> children = new ArrayList<InflationPlan>();
+        for (ViewNode child : viewNode.getChildren()) {
+            children.add(compile(child));
+        }
+
+        if (viewNode.getName().equals("merge")) {
+            return new MergePlan(children);
+        } else if (viewNode.getName().equals("fragment")) {
+            Class<? extends Fragment> fragmentClass = loadFragmentClass(Attribute.find(viewNode.getAttributes(), "android:attr/name").value);
+            return new FragmentPlan(viewNode, fragmentClass, children);
+        } else {
+            return new ViewPlan(viewNode, pickViewClass(viewNode), children);
         }
     }
 
@@ -72,7 +120,7 @@ public class LayoutBuilder {
         }
 
         try {
-            return doInflate(context, plusAttributes(viewNode, attributes), parent, qualifiers);
+            return doInflate(context, mergedViewNode(viewNode, attributes), parent, qualifiers);
         } catch (I18nException e) {
             throw e;
         } catch (Exception e) {
@@ -83,8 +131,12 @@ public class LayoutBuilder {
 
     void invokeOnFinishInflate(View view) {
         try {
-            Method onFinishInflate = View.class.getDeclaredMethod("onFinishInflate");
-            onFinishInflate.setAccessible(true);
+            Method onFinishInflate = LayoutBuilder.onFinishInflate;
+            if (onFinishInflate == null) {
+                onFinishInflate = View.class.getDeclaredMethod("onFinishInflate");
+                onFinishInflate.setAccessible(true);
+                LayoutBuilder.onFinishInflate = onFinishInflate;
+            }
             onFinishInflate.invoke(view);
         } catch (InvocationTargetException e) {
             throw new RuntimeException(e);
@@ -95,92 +147,12 @@ public class LayoutBuilder {
         }
     }
 
-    View create(ViewNode viewNode, Context context, ViewGroup parent) {
-        if (viewNode.isInclude()) {
-            throw new IllegalStateException();
-        } else if (viewNode.getName().equals("merge")) {
-            return parent;
-        } else if (viewNode.getName().equals("fragment")) {
-            View fragment = constructFragment(viewNode, context);
-            addToParent(parent, fragment);
-            return fragment;
-        } else {
-            applyFocusOverride(viewNode, parent);
-            View view = constructView(viewNode, context);
-            addToParent(parent, view);
-            shadowOf(view).applyFocus();
-            return view;
-        }
-    }
-
-    private FrameLayout constructFragment(ViewNode viewNode, Context context) {
-        List<Attribute> attributes = viewNode.getAttributes();
-        AttributeSet attributeSet = shadowOf(context).createAttributeSet(attributes, View.class);
-
-        Class<? extends Fragment> clazz = loadFragmentClass(Attribute.find(attributes, "android:attr/name").value);
-        Fragment fragment;
-        try {
-            fragment = ((Constructor<? extends Fragment>) clazz.getConstructor()).newInstance();
-        } catch (InstantiationException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        } catch (InvocationTargetException e) {
-            throw new RuntimeException(e);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
-        if (!(context instanceof FragmentActivity)) {
-            throw new RuntimeException("Cannot inflate a fragment unless the activity is a FragmentActivity");
-        }
-
-        FragmentActivity activity = (FragmentActivity) context;
-
-        String tag = attributeSet.getAttributeValue("android", "tag");
-        int id = attributeSet.getAttributeResourceValue("android", "id", 0);
-        // TODO: this should probably be changed to call TestFragmentManager.addFragment so that the
-        // inflated fragments don't get started twice (once in the commit, and once in ShadowFragmentActivity's
-        // onStart()
-        activity.getSupportFragmentManager().beginTransaction().add(id, fragment, tag).commit();
-
-        View view = fragment.getView();
-
-        FrameLayout container = new FrameLayout(context);
-        container.setId(id);
-        container.addView(view);
-        return container;
-    }
-
-    private void addToParent(ViewGroup parent, View view) {
+    private static void addToParent(ViewGroup parent, View view) {
         if (parent != null && parent != view) {
             parent.addView(view);
         }
     }
 
-    private View constructView(ViewNode viewNode, Context context) {
-        Class<? extends View> clazz = pickViewClass(viewNode);
-        try {
-            try {
-                RoboAttributeSet attributeSet = shadowOf(context).createAttributeSet(viewNode.getAttributes(), View.class);
-                return ((Constructor<? extends View>) clazz.getConstructor(Context.class, AttributeSet.class)).newInstance(context, attributeSet);
-            } catch (NoSuchMethodException e) {
-                try {
-                    return ((Constructor<? extends View>) clazz.getConstructor(Context.class)).newInstance(context);
-                } catch (NoSuchMethodException e1) {
-                    return ((Constructor<? extends View>) clazz.getConstructor(Context.class, String.class)).newInstance(context, "");
-                }
-            }
-        } catch (InstantiationException e) {
-            throw new RuntimeException(e);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        } catch (InvocationTargetException e) {
-            throw new RuntimeException(e);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private Class<? extends View> pickViewClass(ViewNode viewNode) {
         String name = viewNode.getName();
 
@@ -229,7 +201,11 @@ public class LayoutBuilder {
     }
 
     public void applyFocusOverride(ViewNode viewNode, ViewParent parent) {
-        if (viewNode.shouldRequestFocusOverride()) {
+        applyFocusOverride(viewNode.shouldRequestFocusOverride(), parent);
+    }
+
+    private static void applyFocusOverride(boolean requestFocusOverride, ViewParent parent) {
+        if (requestFocusOverride) {
             View ancestor = (View) parent;
             while (ancestor.getParent() != null) {
                 ancestor = (View) ancestor.getParent();
@@ -238,6 +214,24 @@ public class LayoutBuilder {
         }
     }
 
+    private ViewNode mergedViewNode(ViewNode viewNode, List<Attribute> attributes) {
+        synchronized (MERGED_VIEW_NODES) {
+            Map<List<Attribute>, ViewNode> mergedViewNodes = MERGED_VIEW_NODES.get(viewNode);
+            ViewNode mergedViewNode = mergedViewNodes == null ? null : mergedViewNodes.get(attributes);
+            if (mergedViewNode != null) return mergedViewNode;
+
+            mergedViewNode = plusAttributes(viewNode, attributes);
+            if (mergedViewNode == viewNode) return viewNode; // no problem, its plan is kept under the loader's node
+
+            if (mergedViewNodes == null) {
+                mergedViewNodes = new HashMap<List<Attribute>, ViewNode>();
+                MERGED_VIEW_NODES.put(viewNode, mergedViewNodes);
+            }
+            mergedViewNodes.put(new ArrayList<Attribute>(attributes), mergedViewNode);
+            return mergedViewNode;
+        }
+    }
+
     /**
      * Create a new ViewLoader with the given attributes merged in. If there's a layout attribute, it'll be excluded.
      */
@@ -256,4 +250,200 @@ public class LayoutBuilder {
         return new ViewNode(viewNode.getName(), newAttrs, viewNode.getXmlContext(),
                 viewNode.getChildren(), viewNode.shouldRequestFocusOverride());
     }
+
+    private abstract static class InflationPlan {
+        abstract View inflate(LayoutBuilder layoutBuilder, Context context, ViewGroup parent, String qualifiers);
+    }
+
+    private static class IncludePlan extends InflationPlan {
+        private final ResName layoutResName;
+        private final List<Attribute> attributes;
+        private final Map<String, ViewNode> includedViewNodes = new ConcurrentHashMap<String, ViewNode>();
+
+        IncludePlan(ResName layoutResName, List<Attribute> attributes) {
+            this.layoutResName = layoutResName;
+            this.attributes = attributes;
+        }
+
+        @Override
+        View inflate(LayoutBuilder layoutBuilder, Context context, ViewGroup parent, String qualifiers) {
+            ViewNode includedViewNode = qualifiers == null ? null : includedViewNodes.get(qualifiers);
+            if (includedViewNode == null) {
+                ViewNode viewNode = layoutBuilder.resourceLoader.getLayoutViewNode(layoutResName, qualifiers);
+                if (viewNode == null) {
+                    throw new RuntimeException("Could not find layout " + layoutResName.name);
+                }
+                // keep the merged node, so the plan compiled for it is kept too
+                includedViewNode = layoutBuilder.plusAttributes(viewNode, attributes);
+                if (qualifiers != null) includedViewNodes.put(qualifiers, includedViewNode);
+            }
+
+            try {
+                return layoutBuilder.doInflate(context, includedViewNode, parent, qualifiers);
+            } catch (I18nException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("error inflating " + layoutResName.name, e);
+            }
+        }
+    }
+
+    private abstract static class ParentPlan extends InflationPlan {
+        private final List<InflationPlan> children;
+
+        ParentPlan(List<InflationPlan> children) {
+            this.children = children;
+        }
+
+        @Override
+        View inflate(LayoutBuilder layoutBuilder, Context context, ViewGroup parent, String qualifiers) {
+            View view = create(context, parent);
+
+            for (InflationPlan child : children) {
+                child.inflate(layoutBuilder, context, (ViewGroup) view, qualifiers);
+            }
+
+            if (view != null) {
+                layoutBuilder.invokeOnFinishInflate(view);
+            }
+            return view;
+        }
+
+        abstract View create(Context context, ViewGroup parent);
+    }
+
+    private static class MergePlan extends ParentPlan {
+        MergePlan(List<InflationPlan> children) {
+            super(children);
+        }
+
+        @Override
+        View create(Context context, ViewGroup parent) {
+            return parent;
+        }
+    }
+
+    private static class ViewPlan extends ParentPlan {
+        private static final int CONTEXT_AND_ATTRIBUTES = 0;
+        private static final int CONTEXT = 1;
+        private static final int CONTEXT_AND_STRING = 2;
+
+        private final List<Attribute> attributes;
+        private final boolean requestFocusOverride;
+        private final Constructor<? extends View> constructor;
+        private final int constructorKind;
+
+        ViewPlan(ViewNode viewNode, Class<? extends View> viewClass, List<InflationPlan> children) {
+            super(children);
+            attributes = viewNode.getAttributes();
+            requestFocusOverride = viewNode.shouldRequestFocusOverride();
+
+            Constructor<? extends View> constructor;
+            int constructorKind;
+            try {
+                try {
+                    constructor = viewClass.getConstructor(Context.class, AttributeSet.class);
+                    constructorKind = CONTEXT_AND_ATTRIBUTES;
+                } catch (NoSuchMethodException e) {
+                    try {
+                        constructor = viewClass.getConstructor(Context.class);
+                        constructorKind = CONTEXT;
+                    } catch (NoSuchMethodException e1) {
+                        constructor = viewClass.getConstructor(Context.class, String.class);
+                        constructorKind = CONTEXT_AND_STRING;
+                    }
+                }
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+            this.constructor = constructor;
+            this.constructorKind = constructorKind;
+        }
+
+        @Override
+        View create(Context context, ViewGroup parent) {
+            applyFocusOverride(requestFocusOverride, parent);
+            View view = construct(context);
+            addToParent(parent, view);
+            shadowOf(view).applyFocus();
+            return view;
+        }
+
+        private View construct(Context context) {
+            RoboAttributeSet attributeSet = shadowOf(context).createAttributeSet(attributes, View.class);
+            try {
+                switch (constructorKind) {
+                    case CONTEXT_AND_ATTRIBUTES:
+                        return constructor.newInstance(context, attributeSet);
+                    case CONTEXT:
+                        return constructor.newInstance(context);
+                    default:
+                        return constructor.newInstance(context, "");
+                }
+            } catch (InstantiationException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static class FragmentPlan extends ParentPlan {
+        private final List<Attribute> attributes;
+        private final Constructor<? extends Fragment> constructor;
+
+        FragmentPlan(ViewNode viewNode, Class<? extends Fragment> fragmentClass, List<InflationPlan> children) {
+            super(children);
+            attributes = viewNode.getAttributes();
+
+            try {
+                constructor = fragmentClass.getConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        View create(Context context, ViewGroup parent) {
+            View fragment = constructFragment(context);
+            addToParent(parent, fragment);
+            return fragment;
+        }
+
+        private FrameLayout constructFragment(Context context) {
+            AttributeSet attributeSet = shadowOf(context).createAttributeSet(attributes, View.class);
+
+            Fragment fragment;
+            try {
+                fragment = constructor.newInstance();
+            } catch (InstantiationException e) {
+                throw new RuntimeException(e);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+            if (!(context instanceof FragmentActivity)) {
+                throw new RuntimeException("Cannot inflate a fragment unless the activity is a FragmentActivity");
+            }
+
+            FragmentActivity activity = (FragmentActivity) context;
+
+            String tag = attributeSet.getAttributeValue("android", "tag");
+            int id = attributeSet.getAttributeResourceValue("android", "id", 0);
+            // TODO: this should probably be changed to call TestFragmentManager.addFragment so that the
+            // inflated fragments don't get started twice (once in the commit, and once in ShadowFragmentActivity's
+            // onStart()
+            activity.getSupportFragmentManager().beginTransaction().add(id, fragment, tag).commit();
+
+            View view = fragment.getView();
+
+            FrameLayout container = new FrameLayout(context);
+            container.setId(id);
+            container.addView(view);
+            return container;
+        }
+    }
 }
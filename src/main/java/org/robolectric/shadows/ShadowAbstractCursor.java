@@ -11,6 +11,7 @@ import android.net.Uri;
 import org.robolectric.internal.Implementation;
 import org.robolectric.internal.Implements;
 import org.robolectric.internal.RealObject;
+import org.robolectric.util.ColumnarCursorWindow;
 
 
 @Implements(AbstractCursor.class)
@@ -18,11 +19,10 @@ public class ShadowAbstractCursor {
     @RealObject
     private AbstractCursor realAbstractCursor;
 
-    protected Map<String, Object> currentRow;
     protected int currentRowNumber = -1;
     protected Map<String, Integer> columnNames = new HashMap<String, Integer>();
     protected String[] columnNameArray;
-    protected Map<Integer, Map<String, Object>> rows = new HashMap<Integer, Map<String, Object>>();
+    protected ColumnarCursorWindow window;
     protected int rowCount;
     protected Uri notificationUri;
 	protected boolean mClosed;
@@ -64,17 +64,12 @@ public class ShadowAbstractCursor {
     }
 
     /**
-     * Set currentRowNumber(Int) and currentRow (Map)
+     * Set currentRowNumber(Int); subclasses read the row's values from {@link #window} there
      *
      * @param pos = the position to set
      */
     protected void setPosition(int pos) {
         currentRowNumber = pos;
-        if ((-1 == currentRowNumber) || (rowCount == currentRowNumber)) {
-            currentRow = null;
-        } else {
-            currentRow = rows.get(currentRowNumber);
-        }
     }
 
     @Implementation
@@ -30,6 +30,7 @@ public class ShadowAccountManager {
     public static AccountManager get(Context context) {
         synchronized (instances) {
             if (!instances.containsKey(context)) {
+                Robolectric.markStaticStateDirty(ShadowAccountManager.class);
                 instances.put(context, Robolectric.newInstanceOf(AccountManager.class));
             }
             return instances.get(context);
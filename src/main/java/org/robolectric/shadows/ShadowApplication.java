@@ -24,6 +24,7 @@ import org.robolectric.internal.Implements;
 import org.robolectric.internal.RealObject;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.tester.org.apache.http.FakeHttpLayer;
+import org.robolectric.util.RobolectricBackgroundExecutorService;
 import org.robolectric.util.Scheduler;
 
 import java.util.ArrayList;
@@ -31,6 +32,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.robolectric.Robolectric.newInstanceOf;
 import static org.robolectric.Robolectric.shadowOf;
@@ -70,6 +72,8 @@ public class ShadowApplication extends ShadowContextWrapper {
         SYSTEM_SERVICE_MAP.put(Context.DOWNLOAD_SERVICE, "android.app.DownloadManager");
     }
 
+    private static final long BACKGROUND_EXECUTOR_SHUTDOWN_TIMEOUT_MS = 1000;
+
     @RealObject private Application realApplication;
 
     private AndroidManifest appManifest;
@@ -86,6 +90,7 @@ public class ShadowApplication extends ShadowContextWrapper {
     private FakeHttpLayer fakeHttpLayer = new FakeHttpLayer();
     private Looper mainLooper = ShadowLooper.myLooper();
     private Scheduler backgroundScheduler = new Scheduler();
+    private RobolectricBackgroundExecutorService backgroundExecutor;
     private Map<String, Map<String, Object>> sharedPreferenceMap = new HashMap<String, Map<String, Object>>();
     private ArrayList<Toast> shownToasts = new ArrayList<Toast>();
     private PowerManager.WakeLock latestWakeLock;
@@ -132,6 +137,36 @@ public class ShadowApplication extends ShadowContextWrapper {
         return backgroundScheduler;
     }
 
+    /**
+     * @return the executor {@code AsyncTask}s run on, which uses real threads if the
+     *         {@value RobolectricBackgroundExecutorService#BACKGROUND_THREADS_PROPERTY} system property is set
+     */
+    public synchronized RobolectricBackgroundExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = new RobolectricBackgroundExecutorService();
+        }
+        return backgroundExecutor;
+    }
+
+    /**
+     * Stops the background executor, if anything has used it, and gives tasks still running on its threads a short
+     * while to notice they've been interrupted, so they don't carry on into the next test.
+     */
+    public void shutDownBackgroundExecutor() {
+        RobolectricBackgroundExecutorService backgroundExecutor;
+        synchronized (this) {
+            backgroundExecutor = this.backgroundExecutor;
+        }
+        if (backgroundExecutor == null) return;
+
+        backgroundExecutor.shutdownNow();
+        try {
+            backgroundExecutor.awaitTermination(BACKGROUND_EXECUTOR_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     @Implementation
     public Context getApplicationContext() {
@@ -22,7 +22,7 @@ public class ShadowAsyncTask<Params, Progress, Result> {
     
     private final FutureTask<Result> future;
     private final BackgroundWorker worker;
-    private AsyncTask.Status status = AsyncTask.Status.PENDING;
+    private volatile AsyncTask.Status status = AsyncTask.Status.PENDING;
     
 	public ShadowAsyncTask() {
 		worker = new BackgroundWorker();
@@ -46,8 +46,16 @@ public class ShadowAsyncTask<Params, Progress, Result> {
 				} catch (InterruptedException e) {
 					// Ignore.
 				} catch (Throwable t) {
-					throw new RuntimeException("An error occured while executing doInBackground()",
+					final RuntimeException e = new RuntimeException("An error occured while executing doInBackground()",
 							t.getCause());
+					if (!Robolectric.getShadowApplication().getBackgroundExecutor().usesRealThreads()) throw e;
+
+					// on a pool thread nobody would see it, so hand it to the test on the main looper
+					Robolectric.getUiThreadScheduler().post(new Runnable() {
+						@Override public void run() {
+							throw e;
+						}
+					});
 				}
         	}
         };
@@ -80,11 +88,7 @@ public class ShadowAsyncTask<Params, Progress, Result> {
 
         worker.params = params;
 
-        Robolectric.getBackgroundScheduler().post(new Runnable() {
-            @Override public void run() {
-            	future.run();
-            }
-        });
+        Robolectric.getShadowApplication().getBackgroundExecutor().execute(future);
 
         return realAsyncTask;
     }
@@ -125,14 +125,17 @@ public class ShadowBitmapFactory {
     }
 
     public static void provideWidthAndHeightHints(Uri uri, int width, int height) {
+        Robolectric.markStaticStateDirty(ShadowBitmapFactory.class);
         widthAndHeightMap.put(uri.toString(), new Point(width, height));
     }
 
     public static void provideWidthAndHeightHints(int resourceId, int width, int height) {
+        Robolectric.markStaticStateDirty(ShadowBitmapFactory.class);
         widthAndHeightMap.put("resource:" + getResourceName(resourceId), new Point(width, height));
     }
 
     public static void provideWidthAndHeightHints(String file, int width, int height) {
+        Robolectric.markStaticStateDirty(ShadowBitmapFactory.class);
         widthAndHeightMap.put("file:" + file, new Point(width, height));
     }
 
@@ -269,6 +269,7 @@ public class ShadowContentResolver {
 
     @Implementation
     public static void setMasterSyncAutomatically(boolean sync) {
+        Robolectric.markStaticStateDirty(ShadowContentResolver.class);
         masterSyncAutomatically = sync;
 
     }
@@ -290,6 +291,7 @@ public class ShadowContentResolver {
     }
 
     public static void registerProvider(String authority, ContentProvider provider) {
+        Robolectric.markStaticStateDirty(ShadowContentResolver.class);
         providers.put(authority, provider);
     }
 
@@ -300,6 +302,7 @@ public class ShadowContentResolver {
     public static Status getStatus(Account account, String authority, boolean create) {
         Map<Account, Status> map = syncableAccounts.get(authority);
         if (map == null) {
+            Robolectric.markStaticStateDirty(ShadowContentResolver.class);
             map = new HashMap<Account, Status>();
             syncableAccounts.put(authority, map);
         }
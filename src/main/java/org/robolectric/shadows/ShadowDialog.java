@@ -109,6 +109,7 @@ public class ShadowDialog {
     @Implementation
     public void show() {
         setLatestDialog(this);
+        Robolectric.markStaticStateDirty(ShadowDialog.class);
         shownDialogs.add(realDialog);
         isShowing = true;
         try {
@@ -95,6 +95,7 @@ public class ShadowDrawable {
     }
 
     public static void addCorruptStreamSource(String src) {
+        Robolectric.markStaticStateDirty(ShadowDrawable.class);
         corruptStreamSources.add(src);
     }
 
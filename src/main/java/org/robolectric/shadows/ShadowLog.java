@@ -1,6 +1,7 @@
 package org.robolectric.shadows;
 
 import android.util.Log;
+import org.robolectric.Robolectric;
 import org.robolectric.internal.Implementation;
 import org.robolectric.internal.Implements;
 
@@ -92,6 +93,7 @@ public class ShadowLog {
             logToStream(stream, level, tag, msg, throwable);
         }
         
+        Robolectric.markStaticStateDirty(ShadowLog.class);
         LogItem item = new LogItem(level, tag, msg, throwable);
         List<LogItem> itemList = null;
         
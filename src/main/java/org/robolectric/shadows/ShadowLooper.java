@@ -7,6 +7,12 @@ import org.robolectric.internal.Implements;
 import org.robolectric.internal.RealObject;
 import org.robolectric.util.Scheduler;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
 import static org.robolectric.Robolectric.shadowOf;
 
 /**
@@ -19,6 +25,7 @@ import static org.robolectric.Robolectric.shadowOf;
 @Implements(Looper.class)
 public class ShadowLooper {
     private static ThreadLocal<Looper> looperForThread = makeThreadLocalLoopers();
+    private static final Set<ShadowLooper> loopersWithPostedTasks = Collections.newSetFromMap(new WeakHashMap<ShadowLooper, Boolean>());
     private Scheduler scheduler = new Scheduler();
     private Thread myThread = Thread.currentThread();
     private @RealObject Looper realObject;
@@ -36,6 +43,9 @@ public class ShadowLooper {
 
     public static synchronized void resetThreadLoopers() {
         looperForThread = makeThreadLocalLoopers();
+        synchronized (loopersWithPostedTasks) {
+            loopersWithPostedTasks.clear();
+        }
     }
 
     @Implementation
@@ -117,6 +127,33 @@ public class ShadowLooper {
         shadowOf(Looper.getMainLooper()).idleConstantly(shouldIdleConstantly);
     }
 
+    /**
+     * Advances the clocks of every looper that's had something posted to it and of the background scheduler by
+     * {@code intervalMillis} in one pass, running their tasks in the order they fall due. Long-running periodic work
+     * like count down timers and repeated {@code postDelayed} chains can be run to completion with a single call
+     * instead of many small {@link #idle(long)}s.
+     *
+     * @return the number of tasks run
+     * @throws IllegalStateException if more than {@link Scheduler#DEFAULT_FAST_FORWARD_TASK_BUDGET} tasks fall due,
+     *                               or if a task keeps reposting itself without the clock moving
+     * @see Scheduler#fastForward(long, int, Scheduler...)
+     */
+    public static int fastForward(long intervalMillis) {
+        return fastForward(intervalMillis, Scheduler.DEFAULT_FAST_FORWARD_TASK_BUDGET);
+    }
+
+    public static int fastForward(long intervalMillis, int taskBudget) {
+        List<Scheduler> schedulers = new ArrayList<Scheduler>();
+        schedulers.add(shadowOf(getMainLooper()).getScheduler());
+        synchronized (loopersWithPostedTasks) {
+            for (ShadowLooper shadowLooper : loopersWithPostedTasks) {
+                if (!schedulers.contains(shadowLooper.scheduler)) schedulers.add(shadowLooper.scheduler);
+            }
+        }
+        schedulers.add(Robolectric.getBackgroundScheduler());
+        return Scheduler.fastForward(intervalMillis, taskBudget, schedulers.toArray(new Scheduler[schedulers.size()]));
+    }
+
     /**
      * Causes {@link Runnable}s that have been scheduled to run immediately to actually run. Does not advance the
      * scheduler's clock;
@@ -172,6 +209,7 @@ public class ShadowLooper {
      */
     public boolean post(Runnable runnable, long delayMillis) {
         if (!quit) {
+            rememberPostedTasks();
             scheduler.postDelayed(runnable, delayMillis);
             return true;
         } else {
@@ -181,6 +219,7 @@ public class ShadowLooper {
 
     public boolean postAtFrontOfQueue(Runnable runnable) {
         if (!quit) {
+            rememberPostedTasks();
             scheduler.postAtFrontOfQueue(runnable);
             return true;
         } else {
@@ -188,6 +227,12 @@ public class ShadowLooper {
         }
     }
 
+    private void rememberPostedTasks() {
+        synchronized (loopersWithPostedTasks) {
+            loopersWithPostedTasks.add(this);
+        }
+    }
+
     public void pause() {
         scheduler.pause();
     }
@@ -2,78 +2,77 @@ package org.robolectric.shadows;
 
 import org.robolectric.internal.Implementation;
 import org.robolectric.internal.Implements;
+import org.robolectric.util.ColumnarCursorWindow;
 
 import android.database.CursorIndexOutOfBoundsException;
 import android.database.MatrixCursor;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @Implements(MatrixCursor.class)
 public class ShadowMatrixCursor extends ShadowAbstractCursor {
-    private List<Object[]> data = new ArrayList<Object[]>();
-
     public void __constructor__(String[] columns) {
         __constructor__(columns, 0);
     }
 
     public void __constructor__(String[] columns, int initialCapacity) {
         columnNameArray = columns;
+        window = new ColumnarCursorWindow(columns.length);
     }
 
     @Implementation
     public void addRow(Object[] data) {
+        window.addRow(data);
         rowCount++;
-        this.data.add(data);
     }
 
     @Implementation
     public String getString(int column) {
-        Object columnValue = get(column);
-        return columnValue == null ? null : columnValue.toString();
+        checkPosition(column);
+        return window.getString(currentRowNumber, column);
     }
 
     @Implementation
     public long getLong(int column) {
-        Number numberValue = (Number) get(column);
-        return numberValue == null ? 0 : numberValue.longValue();
+        checkPosition(column);
+        return window.getLong(currentRowNumber, column);
     }
 
     @Implementation
     public short getShort(int column) {
-        Number numberValue = (Number) get(column);
-        return numberValue == null ? 0 : numberValue.shortValue();
+        checkPosition(column);
+        return window.getShort(currentRowNumber, column);
     }
 
     @Implementation
     public int getInt(int column) {
-        Number numberValue = (Number) get(column);
-        return numberValue == null ? 0 : numberValue.intValue();
+        checkPosition(column);
+        return window.getInt(currentRowNumber, column);
     }
 
     @Implementation
     public float getFloat(int column) {
-        Number numberValue = (Number) get(column);
-        return numberValue == null ? 0.0f : numberValue.floatValue();
+        checkPosition(column);
+        return window.getFloat(currentRowNumber, column);
     }
 
     @Implementation
     public double getDouble(int column) {
-        Number numberValue = (Number) get(column);
-        return numberValue == null ? 0.0 : numberValue.doubleValue();
+        checkPosition(column);
+        return window.getDouble(currentRowNumber, column);
     }
 
     @Implementation
     public byte[] getBlob(int column) {
-        return (byte[]) get(column);
+        checkPosition(column);
+        return window.getBlob(currentRowNumber, column);
     }
 
     @Implementation
     public boolean isNull(int column) {
-        return get(column) == null;
+        checkPosition(column);
+        return window.isNull(currentRowNumber, column);
     }
 
-    private Object get(int column) {
+    private void checkPosition(int column) {
         if (column < 0 || column >= columnNameArray.length) {
             throw new CursorIndexOutOfBoundsException(null);
         }
@@ -83,6 +82,5 @@ public class ShadowMatrixCursor extends ShadowAbstractCursor {
         if (currentRowNumber >= rowCount) {
             throw new CursorIndexOutOfBoundsException("After last row.");
         }
-        return data.get(currentRowNumber)[column];
     }
 }
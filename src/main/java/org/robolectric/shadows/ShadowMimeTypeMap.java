@@ -58,6 +58,7 @@ public class ShadowMimeTypeMap {
     }
 
     public void addExtensionMimeTypMapping(String extension, String mimeType) {
+        Robolectric.markStaticStateDirty(ShadowMimeTypeMap.class);
         extensionToMimeTypeMap.put(extension, mimeType);
         mimeTypeToExtensionMap.put(mimeType, extension);
     }
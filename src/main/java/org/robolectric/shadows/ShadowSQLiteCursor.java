@@ -3,24 +3,24 @@ package org.robolectric.shadows;
 import android.database.sqlite.SQLiteCursor;
 import org.robolectric.internal.Implementation;
 import org.robolectric.internal.Implements;
+import org.robolectric.util.ColumnarCursorWindow;
 
 import java.sql.Clob;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
- * Simulates an Android Cursor object, by wrapping a JDBC ResultSet.
+ * Simulates an Android Cursor object, by wrapping a JDBC ResultSet. Rows are read from the result set as the cursor
+ * first reaches them and kept, like Android's CursorWindow does, so the cursor can move back over them; asking for
+ * the count or moving to the last row reads the rest.
  */
 @Implements(SQLiteCursor.class)
 public class ShadowSQLiteCursor extends ShadowAbstractCursor {
 
     private ResultSet resultSet;
-    
+    private boolean allRowsRead = true;
+
     
     /**
      * Stores the column names so they are retrievable after the resultSet has closed
@@ -67,6 +67,13 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
         return columnIndex;
     }
 
+    @Implementation
+    @Override
+    public int getCount() {
+        readRemainingRows();
+        return rowCount;
+    }
+
     @Implementation
     @Override
     public final boolean moveToLast() {
@@ -76,91 +83,86 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
     @Implementation
     @Override
     public final boolean moveToFirst() {
-        return super.moveToFirst();
+        boolean hasRows = readRowsThrough(0);
+        setPosition(0);
+        return hasRows;
     }
 
     @Implementation
     @Override
     public boolean moveToNext() {
-        return super.moveToNext();
+        if (!readRowsThrough(currentRowNumber + 1)) {
+            currentRowNumber = rowCount;
+            return false;
+        }
+        setPosition(++currentRowNumber);
+        return true;
     }
     
     @Implementation
     @Override
     public boolean moveToPrevious() {
-        return super.moveToPrevious();
+        if (currentRowNumber < 0 || !readRowsThrough(0)) {
+            return false;
+        }
+        setPosition(--currentRowNumber);
+        return true;
     }
     
     @Implementation
     @Override
     public boolean moveToPosition(int pos) {
-    	return super.moveToPosition(pos);
+        if (!readRowsThrough(pos)) {
+            return false;
+        }
+        setPosition(pos);
+        return true;
     }
 
     @Implementation
     public byte[] getBlob(int columnIndex) {
     	checkPosition();
-        return (byte[]) this.currentRow.get(getColumnNames()[columnIndex]);
+        return window.getBlob(currentRowNumber, columnIndex);
     }
 
     @Implementation
     public String getString(int columnIndex) {
         checkPosition();
-        Object value = this.currentRow.get(getColumnNames()[columnIndex]);
-        if (value instanceof Clob) {
-            try {
-                return ((Clob) value).getSubString(1, (int)((Clob) value).length());
-            } catch (SQLException x) {
-                throw new RuntimeException(x);
-            }
-        } else {
-            return (String)value;
-        }
+        return window.getString(currentRowNumber, columnIndex);
     }
 	
 	@Implementation
 	public short getShort(int columnIndex) {
 		checkPosition();
-		Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Short(o.toString());
+		return window.getShort(currentRowNumber, columnIndex);
 	}
 	
     @Implementation
     public int getInt(int columnIndex) {
     	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Integer(o.toString());
+    	return window.getInt(currentRowNumber, columnIndex);
     }
 
     @Implementation
     public long getLong(int columnIndex) {
     	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Long(o.toString());
+    	return window.getLong(currentRowNumber, columnIndex);
     }
 
     @Implementation
     public float getFloat(int columnIndex) {
     	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Float(o.toString());
-        
+    	return window.getFloat(currentRowNumber, columnIndex);
     }
 
     @Implementation
     public double getDouble(int columnIndex) {
     	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-    	return new Double(o.toString());
+    	return window.getDouble(currentRowNumber, columnIndex);
     }
     
     private void checkPosition() {
-        if (-1 == currentRowNumber || getCount() == currentRowNumber) {      
+        if (currentRowNumber < 0 || !readRowsThrough(currentRowNumber)) {
             throw new IndexOutOfBoundsException(currentRowNumber + " " + getCount());
         }
     }
@@ -174,8 +176,8 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
         try {
             resultSet.close();
             resultSet = null;
-            rows = null;
-            currentRow = null;
+            allRowsRead = true;
+            window = null;
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in close", e);
         }
@@ -188,8 +190,8 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
 
     @Implementation
     public boolean isNull(int columnIndex) {
-        Object o = this.currentRow.get(getColumnNames()[columnIndex]);
-        return o == null;
+        checkPosition();
+        return window.isNull(currentRowNumber, columnIndex);
     }
 
     /**
@@ -213,50 +215,60 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
     }    
     
     /**
-     * loads a row's values
+     * copies the result set's current row into the window
      * @param rs
-     * @return
      * @throws SQLException
      */
-    private Map<String,Object> fillRowValues(ResultSet rs) throws SQLException {
-    	Map<String,Object> row = new HashMap<String,Object>();
-    	for (String s : getColumnNames()) {
-			  row.put(s, rs.getObject(s));
-    	}
-    	return row;
+    private void fillRowValues(ResultSet rs) throws SQLException {
+        int row = window.addRow();
+        for (int columnIndex = 0; columnIndex < columnNameArray.length; columnIndex++) {
+            Object value = rs.getObject(columnIndex + 1);
+            if (value instanceof Clob) {
+                Clob clob = (Clob) value;
+                window.putString(row, columnIndex, clob.getSubString(1, (int) clob.length()));
+            } else {
+                window.put(row, columnIndex, value);
+            }
+        }
     }
-    private void fillRows(String sql, Connection connection) throws SQLException {
-    	//ResultSets in SQLite\Android are only TYPE_FORWARD_ONLY. Android caches results in the WindowedCursor to allow moveToPrevious() to function.
-    	//Robolectric will have to cache the results too. In the rows map.
-    	Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-        ResultSet rs = statement.executeQuery(sql);
-        int count = 0;
-        if (rs.next()) {  
-        	     do {
-        	    	Map<String,Object> row = fillRowValues(rs);
-         	    	rows.put(count, row);
-        	    	count++;
-        	     } while (rs.next());  
-        	 } else {  
-        		 rs.close(); 
-        	 } 
-        
-        rowCount = count;
-        
+    /**
+     * @return true if there's a row at {@code position}
+     */
+    private boolean readRowsThrough(int position) {
+        try {
+            while (rowCount <= position && !allRowsRead) {
+                if (resultSet.next()) {
+                    fillRowValues(resultSet);
+                    rowCount++;
+                } else {
+                    allRowsRead = true;
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL exception reading rows", e);
+        }
+        return position < rowCount;
     }
-    
+
+    /**
+     * Reads the rest of the result set, e.g. before the database changes under it.
+     */
+    void readRemainingRows() {
+        readRowsThrough(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param result the rows this cursor moves over, which it reads as it goes
+     * @param sql    the query that produced them
+     */
     public void setResultSet(ResultSet result, String sql) {
         this.resultSet = result;
         rowCount = 0;
+        allRowsRead = result == null;
 
-        //Cache all rows.  Caching rows should be thought of as a simple replacement for ShadowCursorWindow
         if (resultSet != null) {
         	cacheColumnNames(resultSet);
-        	try {
-        		fillRows(sql, result.getStatement().getConnection());
-			} catch (SQLException e) {
-			    throw new RuntimeException("SQL exception in setResultSet", e);
-			}
+        	window = new ColumnarCursorWindow(columnNameArray.length);
         }
     }
 }
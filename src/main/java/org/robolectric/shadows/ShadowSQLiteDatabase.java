@@ -114,6 +114,7 @@ public class ShadowSQLiteDatabase  {
     public long insertWithOnConflict(String table, String nullColumnHack,
                                      ContentValues initialValues, int conflictAlgorithm) throws android.database.SQLException {
 
+        readOpenCursorsToEnd();
         try {
             SQLStringAndBindings sqlInsertString = buildInsertString(table, initialValues, conflictAlgorithm);
             PreparedStatement insert = connection.prepareStatement(sqlInsertString.sql, Statement.RETURN_GENERATED_KEYS);
@@ -180,6 +181,7 @@ public class ShadowSQLiteDatabase  {
     @Implementation
     public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
         SQLStringAndBindings sqlUpdateString = buildUpdateString(table, values, whereClause, whereArgs);
+        readOpenCursorsToEnd();
 
         try {
             PreparedStatement statement = connection.prepareStatement(sqlUpdateString.sql);
@@ -198,6 +200,7 @@ public class ShadowSQLiteDatabase  {
     @Implementation
     public int delete(String table, String whereClause, String[] whereArgs) {
         String sql = buildDeleteString(table, whereClause, whereArgs);
+        readOpenCursorsToEnd();
 
         try {
             return connection.prepareStatement(sql).executeUpdate();
@@ -211,6 +214,7 @@ public class ShadowSQLiteDatabase  {
         if (!isOpen()) {
             throw new IllegalStateException("database not open");
         }
+        readOpenCursorsToEnd();
 
         try {
             String scrubbedSql = DatabaseConfig.getScrubSQL(sql);
@@ -228,7 +232,7 @@ public class ShadowSQLiteDatabase  {
             throw new IllegalArgumentException("Empty bindArgs");
         }
         String scrubbedSql = DatabaseConfig.getScrubSQL(sql);
-
+        readOpenCursorsToEnd();
 
         SQLiteStatement statement = null;
             try {
@@ -301,6 +305,7 @@ public class ShadowSQLiteDatabase  {
         if (!isOpen()) {
             return;
         }
+        readOpenCursorsToEnd();
         try {
             connection.close();
             connection = null;
@@ -340,6 +345,7 @@ public class ShadowSQLiteDatabase  {
           transaction.parent.descendantsSuccess &= transaction.success;
           transaction = transaction.parent;
       } else {
+          readOpenCursorsToEnd();
           try {
               if (transaction.success && transaction.descendantsSuccess) {
                   connection.commit();
@@ -426,6 +432,25 @@ public class ShadowSQLiteDatabase  {
         return querySql;
     }
 
+    /**
+     * Cursors read their rows lazily, so before anything changes the database or closes the connection they read
+     * the rest, and still see the rows as they were when they were queried. Compiled statements call this before they
+     * write, too.
+     *
+     * Closed cursors are dropped along the way, so a loop of query-and-close followed by writes doesn't walk every
+     * cursor ever opened on each write.
+     */
+    void readOpenCursorsToEnd() {
+        for (Iterator<Cursor> iterator = cursors.iterator(); iterator.hasNext(); ) {
+            Cursor cursor = iterator.next();
+            if (cursor.isClosed()) {
+                iterator.remove();
+            } else {
+                shadowOf((SQLiteCursor) cursor).readRemainingRows();
+            }
+        }
+    }
+
     private static class Transaction {
         final Transaction parent;
         boolean success;
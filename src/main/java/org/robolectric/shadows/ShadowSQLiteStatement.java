@@ -9,6 +9,8 @@ import org.robolectric.internal.Implements;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
+import static org.robolectric.Robolectric.shadowOf;
+
 @Implements(SQLiteStatement.class)
 public class ShadowSQLiteStatement extends ShadowSQLiteProgram {
     String mSql;
@@ -23,6 +25,7 @@ public class ShadowSQLiteStatement extends ShadowSQLiteProgram {
         if (!mDatabase.isOpen()) {
             throw new IllegalStateException("database " + mDatabase.getPath() + " already closed");
         }
+        shadowOf(mDatabase).readOpenCursorsToEnd();
         try {
             actualDBstatement.execute();
         } catch (SQLException e) {
@@ -32,6 +35,7 @@ public class ShadowSQLiteStatement extends ShadowSQLiteProgram {
 
     @Implementation
     public long executeInsert() {
+        shadowOf(mDatabase).readOpenCursorsToEnd();
         try {
             actualDBstatement.executeUpdate();
             ResultSet resultSet = actualDBstatement.getGeneratedKeys();
@@ -1,5 +1,6 @@
 package org.robolectric.shadows;
 
+import org.robolectric.Robolectric;
 import org.robolectric.internal.Implementation;
 import org.robolectric.internal.Implements;
 
@@ -53,6 +54,7 @@ public class ShadowStatFs {
     }
 
     public static void registerStats(String path, int blockCount, int freeBlocks, int availableBlocks) {
+        Robolectric.markStaticStateDirty(ShadowStatFs.class);
         stats.put(path, new Stats(blockCount, freeBlocks, availableBlocks));
     }
 
@@ -0,0 +1,258 @@
+package org.robolectric.util;
+
+/**
+ * Holds a cursor's rows the way Android's {@code CursorWindow} does, by column and by type, so reading a number back
+ * doesn't box it and adding a row doesn't allocate a map. Rows are kept in blocks of {@value #ROWS_PER_BLOCK}, and
+ * within a block each column only gets an array for the kinds of values that actually turn up in it.
+ *
+ * Values convert between types much as they do in {@code CursorWindow}: numbers are cast, strings are parsed, and
+ * null reads as zero.
+ */
+public class ColumnarCursorWindow {
+    public static final int ROWS_PER_BLOCK = 256;
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_MASK = ROWS_PER_BLOCK - 1;
+
+    // these match Cursor.FIELD_TYPE_*, except that FLOAT remembers a value was a float, so it prints like one
+    public static final byte TYPE_NULL = 0;
+    public static final byte TYPE_INTEGER = 1;
+    public static final byte TYPE_DOUBLE = 2;
+    public static final byte TYPE_STRING = 3;
+    public static final byte TYPE_BLOB = 4;
+    public static final byte TYPE_FLOAT = 5;
+
+    private final int columnCount;
+    private Column[][] blocks = new Column[4][];
+    private int rowCount;
+
+    public ColumnarCursorWindow(int columnCount) {
+        this.columnCount = columnCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the new row's position; its values are all null until they're put
+     */
+    public int addRow() {
+        int block = rowCount >>> BLOCK_SHIFT;
+        if (block == blocks.length) {
+            Column[][] newBlocks = new Column[blocks.length * 2][];
+            System.arraycopy(blocks, 0, newBlocks, 0, blocks.length);
+            blocks = newBlocks;
+        }
+        if (blocks[block] == null) {
+            Column[] columns = new Column[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                columns[i] = new Column();
+            }
+            blocks[block] = columns;
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Adds a row holding {@code values}; columns past the end of a short row are null.
+     */
+    public int addRow(Object[] values) {
+        int row = addRow();
+        int count = Math.min(values.length, columnCount);
+        for (int column = 0; column < count; column++) {
+            put(row, column, values[column]);
+        }
+        return row;
+    }
+
+    public void put(int row, int column, Object value) {
+        if (value == null) {
+            putNull(row, column);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            putLong(row, column, ((Number) value).longValue());
+        } else if (value instanceof Float) {
+            column(row, column).putDouble(row & BLOCK_MASK, (Float) value, TYPE_FLOAT);
+        } else if (value instanceof Double) {
+            putDouble(row, column, (Double) value);
+        } else if (value instanceof byte[]) {
+            putBlob(row, column, (byte[]) value);
+        } else {
+            putString(row, column, value.toString());
+        }
+    }
+
+    public void putNull(int row, int column) {
+        column(row, column).types[row & BLOCK_MASK] = TYPE_NULL;
+    }
+
+    public void putLong(int row, int column, long value) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        if (c.longs == null) c.longs = new long[ROWS_PER_BLOCK];
+        c.longs[i] = value;
+        c.types[i] = TYPE_INTEGER;
+    }
+
+    public void putDouble(int row, int column, double value) {
+        column(row, column).putDouble(row & BLOCK_MASK, value, TYPE_DOUBLE);
+    }
+
+    public void putString(int row, int column, String value) {
+        if (value == null) {
+            putNull(row, column);
+            return;
+        }
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        if (c.strings == null) c.strings = new String[ROWS_PER_BLOCK];
+        c.strings[i] = value;
+        c.types[i] = TYPE_STRING;
+    }
+
+    public void putBlob(int row, int column, byte[] value) {
+        if (value == null) {
+            putNull(row, column);
+            return;
+        }
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        if (c.blobs == null) c.blobs = new byte[ROWS_PER_BLOCK][];
+        c.blobs[i] = value;
+        c.types[i] = TYPE_BLOB;
+    }
+
+    public byte getType(int row, int column) {
+        return column(row, column).types[row & BLOCK_MASK];
+    }
+
+    public boolean isNull(int row, int column) {
+        return getType(row, column) == TYPE_NULL;
+    }
+
+    public long getLong(int row, int column) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        switch (c.types[i]) {
+            case TYPE_NULL:
+                return 0;
+            case TYPE_INTEGER:
+                return c.longs[i];
+            case TYPE_DOUBLE:
+            case TYPE_FLOAT:
+                return (long) c.doubles[i];
+            case TYPE_STRING:
+                return Long.parseLong(c.strings[i]);
+            default:
+                throw new ClassCastException("can't read a blob as a number");
+        }
+    }
+
+    public int getInt(int row, int column) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        switch (c.types[i]) {
+            case TYPE_STRING:
+                return Integer.parseInt(c.strings[i]);
+            case TYPE_DOUBLE:
+            case TYPE_FLOAT:
+                return (int) c.doubles[i];
+            default:
+                return (int) getLong(row, column);
+        }
+    }
+
+    public short getShort(int row, int column) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        switch (c.types[i]) {
+            case TYPE_STRING:
+                return Short.parseShort(c.strings[i]);
+            case TYPE_DOUBLE:
+            case TYPE_FLOAT:
+                return (short) c.doubles[i];
+            default:
+                return (short) getLong(row, column);
+        }
+    }
+
+    public double getDouble(int row, int column) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        switch (c.types[i]) {
+            case TYPE_NULL:
+                return 0;
+            case TYPE_INTEGER:
+                return c.longs[i];
+            case TYPE_DOUBLE:
+            case TYPE_FLOAT:
+                return c.doubles[i];
+            case TYPE_STRING:
+                return Double.parseDouble(c.strings[i]);
+            default:
+                throw new ClassCastException("can't read a blob as a number");
+        }
+    }
+
+    public float getFloat(int row, int column) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        if (c.types[i] == TYPE_STRING) return Float.parseFloat(c.strings[i]);
+        return (float) getDouble(row, column);
+    }
+
+    public String getString(int row, int column) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        switch (c.types[i]) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_INTEGER:
+                return Long.toString(c.longs[i]);
+            case TYPE_DOUBLE:
+                return Double.toString(c.doubles[i]);
+            case TYPE_FLOAT:
+                return Float.toString((float) c.doubles[i]);
+            case TYPE_STRING:
+                return c.strings[i];
+            default:
+                throw new ClassCastException("can't read a blob as a string");
+        }
+    }
+
+    public byte[] getBlob(int row, int column) {
+        Column c = column(row, column);
+        int i = row & BLOCK_MASK;
+        switch (c.types[i]) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_BLOB:
+                return c.blobs[i];
+            default:
+                throw new ClassCastException("can't read a " + (c.types[i] == TYPE_STRING ? "string" : "number") + " as a blob");
+        }
+    }
+
+    private Column column(int row, int column) {
+        if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("row " + row + ", " + rowCount + " rows");
+        if (column < 0 || column >= columnCount) throw new IndexOutOfBoundsException("column " + column + ", " + columnCount + " columns");
+        return blocks[row >>> BLOCK_SHIFT][column];
+    }
+
+    private static class Column {
+        final byte[] types = new byte[ROWS_PER_BLOCK];
+        long[] longs;
+        double[] doubles;
+        String[] strings;
+        byte[][] blobs;
+
+        void putDouble(int i, double value, byte type) {
+            if (doubles == null) doubles = new double[ROWS_PER_BLOCK];
+            doubles[i] = value;
+            types[i] = type;
+        }
+    }
+}
@@ -2,91 +2,197 @@ package org.robolectric.util;
 
 import org.robolectric.Robolectric;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-public class RobolectricBackgroundExecutorService implements ExecutorService {
-    @Override
-    public void shutdown() {
-        throw new UnsupportedOperationException();
+/**
+ * Runs background work for the code under test. By default each task is posted to the application's background
+ * {@link Scheduler} and runs on the test thread when the test lets it, e.g. with {@link Robolectric#runBackgroundTasks()}.
+ *
+ * Constructed with a thread count, or with the default constructor when the {@value #BACKGROUND_THREADS_PROPERTY}
+ * system property is set, tasks run on a pool of that many real threads instead, so code that's meant to run
+ * concurrently really does. Anything those tasks post to the main looper still waits there until the test idles it.
+ */
+public class RobolectricBackgroundExecutorService extends AbstractExecutorService {
+    public static final String BACKGROUND_THREADS_PROPERTY = "robolectric.backgroundThreads";
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 10;
+
+    private final ThreadPoolExecutor threadPool;
+
+    // only used when there's no thread pool; guarded by this
+    private final Map<PendingTask, Scheduler> pendingTasks = new LinkedHashMap<PendingTask, Scheduler>();
+    private boolean shutdown;
+
+    public RobolectricBackgroundExecutorService() {
+        this(Integer.getInteger(BACKGROUND_THREADS_PROPERTY, 0));
     }
 
-    @Override
-    public List<Runnable> shutdownNow() {
-        throw new UnsupportedOperationException();
+    /**
+     * @param threadCount how many real threads to run tasks on, or 0 to run them on the background scheduler
+     */
+    public RobolectricBackgroundExecutorService(int threadCount) {
+        if (threadCount < 0) throw new IllegalArgumentException("threadCount < 0: " + threadCount);
+
+        if (threadCount == 0) {
+            threadPool = null;
+        } else {
+            threadPool = new ThreadPoolExecutor(threadCount, threadCount, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private int threadCount;
+
+                @Override public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "robolectric-background-" + ++threadCount);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            threadPool.allowCoreThreadTimeOut(true); // so a pool nobody shuts down doesn't outlive its test for long
+        }
     }
 
-    @Override
-    public boolean isShutdown() {
-        throw new UnsupportedOperationException();
+    public boolean usesRealThreads() {
+        return threadPool != null;
     }
 
     @Override
-    public boolean isTerminated() {
-        throw new UnsupportedOperationException();
+    public void execute(Runnable runnable) {
+        if (threadPool != null) {
+            threadPool.execute(runnable);
+            return;
+        }
+
+        Scheduler scheduler = Robolectric.getShadowApplication().getBackgroundScheduler();
+        PendingTask pendingTask = new PendingTask(runnable);
+        synchronized (this) {
+            if (shutdown) throw new RejectedExecutionException("executor has been shut down");
+            pendingTasks.put(pendingTask, scheduler);
+        }
+        scheduler.post(pendingTask);
     }
 
     @Override
-    public boolean awaitTermination(long l, TimeUnit timeUnit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+    public void shutdown() {
+        if (threadPool != null) {
+            threadPool.shutdown();
+            return;
+        }
+
+        synchronized (this) {
+            shutdown = true;
+        }
     }
 
     @Override
-    public <T> Future<T> submit(Callable<T> tCallable) {
-        return schedule(new FutureTask<T>(tCallable));
+    public List<Runnable> shutdownNow() {
+        if (threadPool != null) {
+            return threadPool.shutdownNow();
+        }
+
+        Map<PendingTask, Scheduler> removed;
+        synchronized (this) {
+            shutdown = true;
+            removed = new LinkedHashMap<PendingTask, Scheduler>(pendingTasks);
+            pendingTasks.clear();
+        }
+
+        List<Runnable> neverRun = new ArrayList<Runnable>(removed.size());
+        for (Map.Entry<PendingTask, Scheduler> entry : removed.entrySet()) {
+            entry.getValue().remove(entry.getKey());
+            neverRun.add(entry.getKey().runnable);
+        }
+        return neverRun;
     }
 
     @Override
-    public <T> Future<T> submit(Runnable runnable, T t) {
-        return schedule(new FutureTask<T>(runnable, t));
+    public boolean isShutdown() {
+        if (threadPool != null) return threadPool.isShutdown();
+
+        synchronized (this) {
+            return shutdown;
+        }
     }
 
     @Override
-    public Future<?> submit(Runnable runnable) {
-        return submit(runnable, null);
+    public boolean isTerminated() {
+        if (threadPool != null) return threadPool.isTerminated();
+
+        synchronized (this) {
+            return shutdown && pendingTasks.isEmpty();
+        }
     }
 
-    private <T> Future<T> schedule(final FutureTask<T> futureTask) {
-        Robolectric.getShadowApplication().getBackgroundScheduler().post(new Runnable() {
-            @Override
-            public void run() {
-                futureTask.run();
-            }
-        });
+    /**
+     * Without real threads, tasks only run when the test runs the background scheduler, so there's nothing to wait
+     * for and this returns straight away.
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        if (threadPool != null) return threadPool.awaitTermination(timeout, timeUnit);
 
-        return futureTask;
+        return isTerminated();
     }
 
+    /**
+     * Only works with real threads. On the background scheduler the tasks wouldn't run until the test ran them, which
+     * it can't do while it's waiting here, so this throws instead of blocking forever.
+     */
     @Override
-    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables) throws InterruptedException {
-        throw new UnsupportedOperationException();
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        checkCanWait("invokeAll");
+        return super.invokeAll(tasks);
     }
 
     @Override
-    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables, long l, TimeUnit timeUnit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit timeUnit) throws InterruptedException {
+        checkCanWait("invokeAll");
+        return super.invokeAll(tasks, timeout, timeUnit);
     }
 
     @Override
-    public <T> T invokeAny(Collection<? extends Callable<T>> callables) throws InterruptedException, ExecutionException {
-        throw new UnsupportedOperationException();
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        checkCanWait("invokeAny");
+        return super.invokeAny(tasks);
     }
 
     @Override
-    public <T> T invokeAny(Collection<? extends Callable<T>> callables, long l, TimeUnit timeUnit) throws InterruptedException, ExecutionException, TimeoutException {
-        throw new UnsupportedOperationException();
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit timeUnit) throws InterruptedException, ExecutionException, TimeoutException {
+        checkCanWait("invokeAny");
+        return super.invokeAny(tasks, timeout, timeUnit);
     }
 
-    @Override
-    public void execute(Runnable runnable) {
-        submit(runnable);
+    private void checkCanWait(String methodName) {
+        if (threadPool == null) {
+            throw new UnsupportedOperationException(methodName + "() would wait for tasks that only run on the background scheduler; " +
+                    "use submit() and run them with Robolectric.runBackgroundTasks(), or set " + BACKGROUND_THREADS_PROPERTY);
+        }
     }
-}
 
+    private class PendingTask implements Runnable {
+        private final Runnable runnable;
+
+        PendingTask(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            synchronized (RobolectricBackgroundExecutorService.this) {
+                if (pendingTasks.remove(this) == null) return; // no problem, shutdownNow() got to it first
+            }
+            runnable.run();
+        }
+    }
+}
@@ -1,12 +1,26 @@
 package org.robolectric.util;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.ListIterator;
-
+import java.util.Map;
+
+/**
+ * Runs posted runnables in virtual time. Runnables wait in a binary heap ordered by scheduled time and then by the
+ * order they were posted in, so posting and running each take O(log n) even with many thousands waiting, and
+ * runnables due at the same time run first in, first out. Each waiting runnable knows its place in the heap, so
+ * removing it doesn't mean searching the queue.
+ */
 public class Scheduler {
-    private List<PostedRunnable> postedRunnables = new ArrayList<PostedRunnable>();
+    public static final int DEFAULT_FAST_FORWARD_TASK_BUDGET = 100000;
+    static final int MAX_RUNS_WITHOUT_TIME_PASSING = 1000;
+
+    private PostedRunnable[] queue = new PostedRunnable[16];
+    private int queueSize;
+    private final Map<Runnable, List<PostedRunnable>> postedRunnablesByRunnable = new IdentityHashMap<Runnable, List<PostedRunnable>>();
+    private long nextSequence = 0;
+    private long nextFrontOfQueueSequence = -1;
     private long currentTime = 0;
     private boolean paused = false;
     private Thread associatedThread = Thread.currentThread();
@@ -31,8 +45,7 @@ public class Scheduler {
 
     public synchronized void postDelayed(Runnable runnable, long delayMillis) {
         if ((!isConstantlyIdling && (paused || delayMillis > 0)) || Thread.currentThread() != associatedThread) {
-            postedRunnables.add(new PostedRunnable(runnable, currentTime + delayMillis));
-            Collections.sort(postedRunnables);
+            enqueue(new PostedRunnable(runnable, currentTime + delayMillis, nextSequence++));
         } else {
             runnable.run();
         }
@@ -44,19 +57,18 @@ public class Scheduler {
 
     public synchronized void postAtFrontOfQueue(Runnable runnable) {
         if (paused || Thread.currentThread() != associatedThread) {
-            postedRunnables.add(0, new PostedRunnable(runnable, currentTime));
+            enqueue(new PostedRunnable(runnable, currentTime, nextFrontOfQueueSequence--));
         } else {
             runnable.run();
         }
     }
 
     public synchronized void remove(Runnable runnable) {
-        ListIterator<PostedRunnable> iterator = postedRunnables.listIterator();
-        while (iterator.hasNext()) {
-            PostedRunnable next = iterator.next();
-            if (next.runnable == runnable) {
-                iterator.remove();
-            }
+        List<PostedRunnable> postedRunnables = postedRunnablesByRunnable.remove(runnable);
+        if (postedRunnables == null) return;
+
+        for (PostedRunnable postedRunnable : postedRunnables) {
+            removeAt(postedRunnable.queueIndex);
         }
     }
 
@@ -65,7 +77,11 @@ public class Scheduler {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(postedRunnables.size() - 1).scheduledTime);
+        long lastScheduledTime = Long.MIN_VALUE;
+        for (int i = 0; i < queueSize; i++) {
+            lastScheduledTime = Math.max(lastScheduledTime, queue[i].scheduledTime);
+        }
+        return advanceTo(lastScheduledTime);
     }
 
     public synchronized boolean advanceToNextPostedRunnable() {
@@ -73,7 +89,7 @@ public class Scheduler {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(0).scheduledTime);
+        return advanceTo(queue[0].scheduledTime);
     }
 
     public synchronized boolean advanceBy(long intervalMs) {
@@ -101,7 +117,7 @@ public class Scheduler {
             return false;
         }
 
-        PostedRunnable postedRunnable = postedRunnables.remove(0);
+        PostedRunnable postedRunnable = dequeue();
         currentTime = postedRunnable.scheduledTime;
         postedRunnable.run();
         return true;
@@ -113,7 +129,7 @@ public class Scheduler {
         }
 
         while (howMany > 0) {
-            PostedRunnable postedRunnable = postedRunnables.remove(0);
+            PostedRunnable postedRunnable = dequeue();
             currentTime = postedRunnable.scheduledTime;
             postedRunnable.run();
             howMany--;
@@ -121,8 +137,68 @@ public class Scheduler {
         return true;
     }
 
+    /**
+     * Advances the clocks of several schedulers by the same interval as if they shared one, running their tasks in the
+     * order they fall due across all of them and jumping straight from one due time to the next. Tasks that post more
+     * tasks within the interval, to their own scheduler or another, see them run in the same pass.
+     *
+     * @param taskBudget the most tasks to run before giving up
+     * @return the number of tasks run
+     * @throws IllegalStateException if more than {@code taskBudget} tasks fall due, or if a runnable keeps running
+     *                               again without the clock moving, as one that reposts itself with no delay would
+     */
+    public static int fastForward(long intervalMillis, int taskBudget, Scheduler... schedulers) {
+        long[] startTimes = new long[schedulers.length];
+        for (int i = 0; i < schedulers.length; i++) {
+            startTimes[i] = schedulers[i].getCurrentTime();
+        }
+
+        int tasksRun = 0;
+        long lastElapsed = Long.MIN_VALUE;
+        Map<Runnable, Integer> runsWithoutTimePassing = new IdentityHashMap<Runnable, Integer>();
+        while (true) {
+            Scheduler nextScheduler = null;
+            PostedRunnable next = null;
+            long nextElapsed = Long.MAX_VALUE;
+            for (int i = 0; i < schedulers.length; i++) {
+                PostedRunnable postedRunnable = schedulers[i].peek();
+                if (postedRunnable != null && postedRunnable.scheduledTime - startTimes[i] < nextElapsed) {
+                    nextScheduler = schedulers[i];
+                    next = postedRunnable;
+                    nextElapsed = postedRunnable.scheduledTime - startTimes[i];
+                }
+            }
+            if (next == null || nextElapsed > intervalMillis) break;
+
+            if (++tasksRun > taskBudget) {
+                throw new IllegalStateException("fast forwarding ran more than " + taskBudget + " tasks; is something reposting itself?");
+            }
+            if (nextElapsed != lastElapsed) {
+                runsWithoutTimePassing.clear();
+                lastElapsed = nextElapsed;
+            }
+            Integer runs = runsWithoutTimePassing.get(next.runnable);
+            runs = runs == null ? 1 : runs + 1;
+            if (runs > MAX_RUNS_WITHOUT_TIME_PASSING) {
+                throw new IllegalStateException(next.runnable + " ran " + MAX_RUNS_WITHOUT_TIME_PASSING + " times without the clock moving; is it reposting itself?");
+            }
+            runsWithoutTimePassing.put(next.runnable, runs);
+
+            // every clock reads the same elapsed time, so whatever the task posts to another scheduler is timed from now
+            for (int i = 0; i < schedulers.length; i++) {
+                schedulers[i].moveClockForwardTo(startTimes[i] + nextElapsed);
+            }
+            nextScheduler.runOneTask();
+        }
+
+        for (int i = 0; i < schedulers.length; i++) {
+            schedulers[i].moveClockForwardTo(startTimes[i] + intervalMillis);
+        }
+        return tasksRun;
+    }
+
     public synchronized int enqueuedTaskCount() {
-        return postedRunnables.size();
+        return queueSize;
     }
 
     public synchronized boolean areAnyRunnable() {
@@ -130,31 +206,118 @@ public class Scheduler {
     }
 
     public synchronized void reset() {
-        postedRunnables.clear();
+        Arrays.fill(queue, 0, queueSize, null);
+        queueSize = 0;
+        postedRunnablesByRunnable.clear();
         paused = false;
         isConstantlyIdling = false;
     }
 
     public synchronized int size() {
-        return postedRunnables.size();
+        return queueSize;
     }
 
     public void idleConstantly(boolean shouldIdleConstantly) {
         isConstantlyIdling = shouldIdleConstantly;
     }
 
+    private synchronized void moveClockForwardTo(long time) {
+        // unlike advanceTo(), this moves the clock even when nothing's waiting
+        if (time - currentTime > 0) currentTime = time;
+    }
+
+    private synchronized PostedRunnable peek() {
+        return queueSize > 0 ? queue[0] : null;
+    }
+
+    private void enqueue(PostedRunnable postedRunnable) {
+        if (queueSize == queue.length) {
+            queue = Arrays.copyOf(queue, queueSize * 2);
+        }
+        queue[queueSize] = postedRunnable;
+        postedRunnable.queueIndex = queueSize;
+        siftUp(queueSize++);
+
+        List<PostedRunnable> postedRunnables = postedRunnablesByRunnable.get(postedRunnable.runnable);
+        if (postedRunnables == null) {
+            postedRunnables = new ArrayList<PostedRunnable>(1);
+            postedRunnablesByRunnable.put(postedRunnable.runnable, postedRunnables);
+        }
+        postedRunnables.add(postedRunnable);
+    }
+
+    private PostedRunnable dequeue() {
+        PostedRunnable postedRunnable = queue[0];
+        removeAt(0);
+
+        List<PostedRunnable> postedRunnables = postedRunnablesByRunnable.get(postedRunnable.runnable);
+        postedRunnables.remove(postedRunnable);
+        if (postedRunnables.isEmpty()) postedRunnablesByRunnable.remove(postedRunnable.runnable);
+        return postedRunnable;
+    }
+
+    private void removeAt(int index) {
+        PostedRunnable last = queue[--queueSize];
+        queue[queueSize] = null;
+        if (index == queueSize) return;
+
+        queue[index] = last;
+        last.queueIndex = index;
+        siftDown(index);
+        if (queue[index] == last) siftUp(index);
+    }
+
+    private void siftUp(int index) {
+        PostedRunnable postedRunnable = queue[index];
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            PostedRunnable parent = queue[parentIndex];
+            if (parent.compareTo(postedRunnable) <= 0) break;
+            place(parent, index);
+            index = parentIndex;
+        }
+        place(postedRunnable, index);
+    }
+
+    private void siftDown(int index) {
+        PostedRunnable postedRunnable = queue[index];
+        int half = queueSize >>> 1;
+        while (index < half) {
+            int childIndex = 2 * index + 1;
+            int rightIndex = childIndex + 1;
+            if (rightIndex < queueSize && queue[rightIndex].compareTo(queue[childIndex]) < 0) {
+                childIndex = rightIndex;
+            }
+            if (postedRunnable.compareTo(queue[childIndex]) <= 0) break;
+            place(queue[childIndex], index);
+            index = childIndex;
+        }
+        place(postedRunnable, index);
+    }
+
+    private void place(PostedRunnable postedRunnable, int index) {
+        queue[index] = postedRunnable;
+        postedRunnable.queueIndex = index;
+    }
+
     class PostedRunnable implements Comparable<PostedRunnable> {
-        Runnable runnable;
-        long scheduledTime;
+        final Runnable runnable;
+        final long scheduledTime;
+        final long sequence;
+        int queueIndex;
 
-        PostedRunnable(Runnable runnable, long scheduledTime) {
+        PostedRunnable(Runnable runnable, long scheduledTime, long sequence) {
             this.runnable = runnable;
             this.scheduledTime = scheduledTime;
+            this.sequence = sequence;
         }
 
         @Override
         public int compareTo(PostedRunnable postedRunnable) {
-            return (int) (scheduledTime - postedRunnable.scheduledTime);
+            if (scheduledTime != postedRunnable.scheduledTime) {
+                return scheduledTime < postedRunnable.scheduledTime ? -1 : 1;
+            }
+            return sequence < postedRunnable.sequence ? -1 : sequence == postedRunnable.sequence ? 0 : 1;
         }
 
         public void run() {
@@ -163,6 +326,6 @@ public class Scheduler {
     }
 
     private boolean nextTaskIsScheduledBefore(long endingTime) {
-        return enqueuedTaskCount() > 0 && postedRunnables.get(0).scheduledTime <= endingTime;
+        return queueSize > 0 && queue[0].scheduledTime <= endingTime;
     }
 }
@@ -4,8 +4,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class Util {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     public static void copy(InputStream in, OutputStream out) throws IOException {
         byte[] buffer = new byte[8196];
         int len;
@@ -33,4 +37,20 @@ public class Util {
         }
         return array;
     }
+
+    public static String sha1Hex(byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(chars);
+    }
 }
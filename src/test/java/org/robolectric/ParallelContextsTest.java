@@ -0,0 +1,125 @@
+package org.robolectric;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.ParallelComputer;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelContextsTest {
+    private String originalParallelContexts;
+
+    @Before public void setUp() throws Exception {
+        originalParallelContexts = System.getProperty(RobolectricContext.PARALLEL_CONTEXTS_PROPERTY);
+        System.setProperty(RobolectricContext.PARALLEL_CONTEXTS_PROPERTY, "2");
+    }
+
+    @After public void tearDown() throws Exception {
+        if (originalParallelContexts == null) {
+            System.clearProperty(RobolectricContext.PARALLEL_CONTEXTS_PROPERTY);
+        } else {
+            System.setProperty(RobolectricContext.PARALLEL_CONTEXTS_PROPERTY, originalParallelContexts);
+        }
+    }
+
+    @Test public void shouldDealTestClassesOutToSeparateContexts() throws Exception {
+        Runner first = new Runner(SampleTest.class);
+        Runner second = new Runner(OtherSampleTest.class);
+        Runner third = new Runner(SampleTest.class);
+
+        assertNotSame(first.getRobolectricContext(), second.getRobolectricContext());
+        assertNotSame(first.getTestClass().getJavaClass().getClassLoader(), second.getTestClass().getJavaClass().getClassLoader());
+        assertSame(first.getRobolectricContext(), third.getRobolectricContext());
+    }
+
+    @Test public void shouldFindContextForBootstrappedClass() throws Exception {
+        Runner runner = new Runner(SampleTest.class);
+        assertSame(runner.getRobolectricContext(), RobolectricContext.contextFor(runner.getTestClass().getJavaClass()));
+    }
+
+    @Test public void shouldRunTestClassesInParallel() throws Exception {
+        contexts.clear();
+        classLoaders.clear();
+        overlapped.clear();
+        bothRunning = new CountDownLatch(2);
+        try {
+            Result result = new JUnitCore().run(ParallelComputer.classes(), SampleTest.class, OtherSampleTest.class);
+            assertTrue(result.getFailures().toString(), result.wasSuccessful());
+            assertEquals(2, result.getRunCount());
+        } finally {
+            bothRunning = null;
+        }
+
+        String sample = SampleTest.class.getName();
+        String otherSample = OtherSampleTest.class.getName();
+        assertNotSame(contexts.get(sample), contexts.get(otherSample));
+        assertNotSame(classLoaders.get(sample), classLoaders.get(otherSample));
+        assertEquals(true, overlapped.get(sample));
+        assertEquals(true, overlapped.get(otherSample));
+    }
+
+    // filled in by Runner, which is loaded outside the contexts it runs tests in, so they all see the same ones
+    private static final Map<String, RobolectricContext> contexts = new ConcurrentHashMap<String, RobolectricContext>();
+    private static final Map<String, ClassLoader> classLoaders = new ConcurrentHashMap<String, ClassLoader>();
+    private static final Map<String, Boolean> overlapped = new ConcurrentHashMap<String, Boolean>();
+    private static volatile CountDownLatch bothRunning;
+
+    public static class Runner extends RobolectricTestRunner {
+        public Runner(Class<?> testClass) throws InitializationError {
+            super(RobolectricContext.bootstrap(Runner.class, testClass, new RobolectricContext.Factory() {
+                @Override
+                public RobolectricContext create() {
+                    return new RobolectricContext();
+                }
+            }));
+        }
+
+        @Override protected Statement methodBlock(FrameworkMethod method) {
+            final Statement statement = super.methodBlock(method);
+            final Class<?> testClass = getTestClass().getJavaClass();
+            return new Statement() {
+                @Override public void evaluate() throws Throwable {
+                    CountDownLatch latch = bothRunning;
+                    if (latch != null) {
+                        contexts.put(testClass.getName(), getRobolectricContext());
+                        classLoaders.put(testClass.getName(), testClass.getClassLoader());
+                        latch.countDown();
+                        // only gets to zero if the other test class is running at the same time
+                        overlapped.put(testClass.getName(), latch.await(10, TimeUnit.SECONDS));
+                    }
+                    statement.evaluate();
+                }
+            };
+        }
+    }
+
+    @RunWith(Runner.class)
+    public static class SampleTest {
+        @Test public void shouldHaveAnApplication() throws Exception {
+            assertNotNull(Robolectric.application);
+        }
+    }
+
+    @RunWith(Runner.class)
+    public static class OtherSampleTest {
+        @Test public void shouldHaveAnApplication() throws Exception {
+            assertNotNull(Robolectric.application);
+        }
+    }
+}
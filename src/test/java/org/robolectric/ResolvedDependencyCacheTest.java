@@ -0,0 +1,67 @@
+package org.robolectric;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResolvedDependencyCacheTest {
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+    private ResolvedDependencyCache cache;
+    private File jar;
+    private String key;
+
+    @Before public void setUp() throws Exception {
+        cache = new ResolvedDependencyCache(new File(tmp.getRoot(), "cache"));
+        jar = writeJar("android-base.jar", 3);
+        key = ResolvedDependencyCache.keyFor("/repo", "org.robolectric:android-base:4.1.2_r1_rc:jar:real");
+    }
+
+    @Test public void shouldReturnNullForMisses() throws Exception {
+        assertNull(cache.getJarsFor(key));
+    }
+
+    @Test public void shouldReturnJarsFromAnotherInstance() throws Exception {
+        cache.putJarsFor(key, Arrays.asList(jar));
+
+        List<File> jars = new ResolvedDependencyCache(new File(tmp.getRoot(), "cache")).getJarsFor(key);
+        assertEquals(Arrays.asList(jar.getAbsoluteFile()), jars);
+    }
+
+    @Test public void shouldKeyOnLocalRepository() throws Exception {
+        cache.putJarsFor(key, Arrays.asList(jar));
+        assertNull(cache.getJarsFor(ResolvedDependencyCache.keyFor("/other-repo", "org.robolectric:android-base:4.1.2_r1_rc:jar:real")));
+    }
+
+    @Test public void shouldIgnoreEntriesWhoseJarsHaveChanged() throws Exception {
+        cache.putJarsFor(key, Arrays.asList(jar));
+        writeJar("android-base.jar", 4);
+        assertNull(cache.getJarsFor(key));
+    }
+
+    @Test public void shouldIgnoreEntriesWhoseJarsAreGone() throws Exception {
+        cache.putJarsFor(key, Arrays.asList(jar));
+        jar.delete();
+        assertNull(cache.getJarsFor(key));
+    }
+
+    private File writeJar(String name, int size) throws IOException {
+        File file = new File(tmp.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
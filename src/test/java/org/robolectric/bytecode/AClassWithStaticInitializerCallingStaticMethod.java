@@ -0,0 +1,13 @@
+package org.robolectric.bytecode;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassWithStaticInitializerCallingStaticMethod {
+    public static String value = describe("initial", 1);
+
+    public static String describe(String stringArg, int intArg) {
+        return "describe(" + stringArg + ", " + intArg + ")";
+    }
+}
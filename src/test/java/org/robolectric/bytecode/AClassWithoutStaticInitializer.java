@@ -0,0 +1,19 @@
+package org.robolectric.bytecode;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassWithoutStaticInitializer {
+    public String first(String stringArg, int intArg) {
+        return "first(" + stringArg + ", " + intArg + ")";
+    }
+
+    public String second(String stringArg, int intArg) {
+        return "second(" + stringArg + ", " + intArg + ")";
+    }
+
+    public String second(int intArg) {
+        return "second(" + intArg + ")";
+    }
+}
@@ -3,6 +3,22 @@ package org.robolectric.bytecode;
 import org.junit.Test;
 import org.robolectric.util.Transcript;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 public class AsmInstrumentingClassLoaderTest extends InstrumentingClassLoaderTestBase {
     protected ClassLoader createClassLoader(Setup setup) throws ClassNotFoundException {
         return new AsmInstrumentingClassLoader(setup);
@@ -32,4 +48,146 @@ public class AsmInstrumentingClassLoaderTest extends InstrumentingClassLoaderTes
 
         transcript.assertEventsSoFar("find foo.AClass");
     }
+
+    @Test public void shouldLoadDifferentClassesConcurrently() throws Exception {
+        final CountDownLatch aStarted = new CountDownLatch(1);
+        final CountDownLatch bFound = new CountDownLatch(1);
+        final boolean[] sawConcurrentLoad = new boolean[1];
+
+        final AsmInstrumentingClassLoader classLoader = new AsmInstrumentingClassLoader(new Setup()) {
+            @Override
+            protected Class<?> findClass(String className) throws ClassNotFoundException {
+                if (className.equals("foo.A")) {
+                    aStarted.countDown();
+                    try {
+                        sawConcurrentLoad[0] = bFound.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                } else {
+                    bFound.countDown();
+                }
+                throw new ClassNotFoundException(className);
+            }
+        };
+
+        Thread thread = new Thread() {
+            @Override public void run() {
+                try {
+                    classLoader.loadClass("foo.A");
+                } catch (ClassNotFoundException e) {
+                    // expected
+                }
+            }
+        };
+        thread.start();
+        aStarted.await();
+
+        try {
+            classLoader.loadClass("foo.B");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+        thread.join();
+
+        assertTrue(sawConcurrentLoad[0]);
+    }
+
+    @Test public void shouldPassTheSameParamTypesArrayOnEveryCall() throws Exception {
+        ParamTypesRecordingClassHandler classHandler = new ParamTypesRecordingClassHandler();
+        Class<?> clazz = loadInstrumented(AClassWithoutStaticInitializer.class, classHandler);
+        Object instance = clazz.newInstance();
+        Method first = clazz.getMethod("first", String.class, int.class);
+
+        first.invoke(instance, "a", 1);
+        first.invoke(instance, "b", 2);
+
+        String[] firstCall = classHandler.paramTypesFor("first").get(0);
+        assertArrayEquals(new String[]{"java.lang.String", "int"}, firstCall);
+        assertSame(firstCall, classHandler.paramTypesFor("first").get(1));
+    }
+
+    @Test public void shouldFillParamTypesFieldsInClassesWithoutAStaticInitializer() throws Exception {
+        Class<?> clazz = loadInstrumented(AClassWithoutStaticInitializer.class, new ParamTypesRecordingClassHandler());
+
+        List<String> paramTypes = new ArrayList<String>();
+        for (Field field : clazz.getDeclaredFields()) {
+            if (!field.getName().startsWith("__robo_param_types_")) continue;
+            int modifiers = field.getModifiers();
+            assertTrue(Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && Modifier.isPrivate(modifiers));
+            assertTrue(field.isSynthetic());
+            field.setAccessible(true);
+            paramTypes.add(Arrays.toString((String[]) field.get(null)));
+        }
+
+        // the constructor's (), first and second's (String, int), second's (int), and the generated equals' (Object)
+        Collections.sort(paramTypes);
+        assertEquals(Arrays.asList("[]", "[int]", "[java.lang.Object]", "[java.lang.String, int]"), paramTypes);
+    }
+
+    @Test public void methodsWithTheSameArgumentsShouldShareAParamTypesArray() throws Exception {
+        ParamTypesRecordingClassHandler classHandler = new ParamTypesRecordingClassHandler();
+        Class<?> clazz = loadInstrumented(AClassWithoutStaticInitializer.class, classHandler);
+        Object instance = clazz.newInstance();
+
+        clazz.getMethod("first", String.class, int.class).invoke(instance, "a", 1);
+        clazz.getMethod("second", String.class, int.class).invoke(instance, "a", 1);
+        clazz.getMethod("second", int.class).invoke(instance, 1);
+
+        List<String[]> secondCalls = classHandler.paramTypesFor("second");
+        assertSame(classHandler.paramTypesFor("first").get(0), secondCalls.get(0));
+        assertNotSame(secondCalls.get(0), secondCalls.get(1));
+        assertArrayEquals(new String[]{"int"}, secondCalls.get(1));
+    }
+
+    @Test public void shadowedCallsFromTheOriginalStaticInitializerShouldSeeParamTypes() throws Exception {
+        ParamTypesRecordingClassHandler classHandler = new ParamTypesRecordingClassHandler();
+        Class<?> clazz = loadInstrumented(AClassWithStaticInitializerCallingStaticMethod.class, classHandler);
+
+        assertEquals("handled describe", clazz.getField("value").get(null));
+        assertArrayEquals(new String[]{"java.lang.String", "int"}, classHandler.paramTypesFor("describe").get(0));
+    }
+
+    private Class<?> loadInstrumented(Class<?> clazz, ClassHandler classHandler) throws ClassNotFoundException {
+        ClassLoader classLoader = createClassLoader(new Setup());
+        injectClassHandler(classLoader, classHandler);
+        return classLoader.loadClass(clazz.getName());
+    }
+
+    private static class ParamTypesRecordingClassHandler extends MyClassHandler {
+        private final List<String> methodNames = new ArrayList<String>();
+        private final List<String[]> paramTypes = new ArrayList<String[]>();
+
+        ParamTypesRecordingClassHandler() {
+            super(new Transcript());
+        }
+
+        @Override
+        public void classInitializing(Class clazz) {
+            try {
+                Method staticInitializer = clazz.getDeclaredMethod(InstrumentingClassLoader.STATIC_INITIALIZER_METHOD_NAME);
+                staticInitializer.setAccessible(true);
+                staticInitializer.invoke(null);
+            } catch (NoSuchMethodException e) {
+                // no problem, there's nothing to run
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Object methodInvoked(Class clazz, String methodName, Object instance, String[] paramTypes, Object[] params) throws Throwable {
+            methodNames.add(methodName);
+            this.paramTypes.add(paramTypes);
+            return "handled " + methodName;
+        }
+
+        List<String[]> paramTypesFor(String methodName) {
+            List<String[]> found = new ArrayList<String[]>();
+            for (int i = 0; i < methodNames.size(); i++) {
+                if (methodNames.get(i).equals(methodName)) found.add(paramTypes.get(i));
+            }
+            return found;
+        }
+    }
 }
@@ -0,0 +1,76 @@
+package org.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class InstrumentedClassCacheTest {
+    private static final byte[] ORIG_BYTES = {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 1, 2, 3};
+    private static final byte[] INSTRUMENTED_BYTES = {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 4, 5, 6};
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+    private InstrumentedClassCache cache;
+
+    @Before public void setUp() throws Exception {
+        cache = new InstrumentedClassCache(tmp.getRoot(), new Setup(), 1);
+    }
+
+    @Test public void shouldReturnNullForMisses() throws Exception {
+        assertNull(cache.getClassBytesFor(cache.keyFor(ORIG_BYTES), ORIG_BYTES));
+    }
+
+    @Test public void shouldReturnInstrumentedBytesFromAnotherInstance() throws Exception {
+        String key = cache.keyFor(ORIG_BYTES);
+        cache.addClass(key, INSTRUMENTED_BYTES);
+
+        InstrumentedClassCache otherCache = new InstrumentedClassCache(tmp.getRoot(), new Setup(), 1);
+        assertArrayEquals(INSTRUMENTED_BYTES, otherCache.getClassBytesFor(key, ORIG_BYTES));
+    }
+
+    @Test public void shouldReturnOriginalBytesForUninstrumentedClasses() throws Exception {
+        String key = cache.keyFor(ORIG_BYTES);
+        cache.addUninstrumentedClass(key);
+        assertSame(ORIG_BYTES, cache.getClassBytesFor(key, ORIG_BYTES));
+    }
+
+    @Test public void shouldNotShareEntriesAcrossInstrumentorVersions() throws Exception {
+        String key = cache.keyFor(ORIG_BYTES);
+        cache.addClass(key, INSTRUMENTED_BYTES);
+
+        InstrumentedClassCache newerCache = new InstrumentedClassCache(tmp.getRoot(), new Setup(), 2);
+        assertNull(newerCache.getClassBytesFor(key, ORIG_BYTES));
+    }
+
+    @Test public void shouldNotShareEntriesAcrossSetups() throws Exception {
+        String key = cache.keyFor(ORIG_BYTES);
+        cache.addClass(key, INSTRUMENTED_BYTES);
+
+        InstrumentedClassCache otherSetupCache = new InstrumentedClassCache(tmp.getRoot(), new Setup() {
+            @Override public String getInstrumentationFingerprint() {
+                return "something-else";
+            }
+        }, 1);
+        assertNull(otherSetupCache.getClassBytesFor(key, ORIG_BYTES));
+    }
+
+    @Test public void shouldNotLeaveTempFilesBehind() throws Exception {
+        String key = cache.keyFor(ORIG_BYTES);
+        cache.addClass(key, INSTRUMENTED_BYTES);
+        cache.addClass(key, INSTRUMENTED_BYTES);
+
+        File[] dirs = cache.getCacheDir().listFiles();
+        assertEquals(1, dirs.length);
+        String[] files = dirs[0].list();
+        assertEquals(1, files.length);
+        assertFalse(files[0].endsWith(".tmp"));
+    }
+}
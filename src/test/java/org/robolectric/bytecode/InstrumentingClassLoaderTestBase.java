@@ -520,7 +520,7 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
         return classLoader.loadClass(clazz.getName());
     }
 
-    private static void injectClassHandler(ClassLoader classLoader, ClassHandler classHandler) {
+    protected static void injectClassHandler(ClassLoader classLoader, ClassHandler classHandler) {
         try {
             Field field = classLoader.loadClass(RobolectricInternals.class.getName()).getDeclaredField("classHandler");
             field.setAccessible(true);
@@ -0,0 +1,119 @@
+package org.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.util.Util.readBytes;
+
+public class JarInstrumenterTest {
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+    private File inputJar;
+    private File outputJar;
+
+    @Before public void setUp() throws Exception {
+        inputJar = new File(tmp.getRoot(), "input.jar");
+        outputJar = new File(tmp.getRoot(), "output.jar");
+
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(inputJar));
+        try {
+            addEntry(out, classFileName(AnExampleClass.class), classBytes(AnExampleClass.class));
+            addEntry(out, classFileName(AnUninstrumentedClass.class), classBytes(AnUninstrumentedClass.class));
+            addEntry(out, "org/robolectric/bytecode/some.properties", "a=b".getBytes());
+        } finally {
+            out.close();
+        }
+
+        new JarInstrumenter(new Setup()).instrument(outputJar, inputJar);
+    }
+
+    @Test public void shouldInstrumentClassesAndCopyEverythingElse() throws Exception {
+        assertFalse(Arrays.equals(classBytes(AnExampleClass.class), entryBytes(classFileName(AnExampleClass.class))));
+        assertArrayEquals(classBytes(AnUninstrumentedClass.class), entryBytes(classFileName(AnUninstrumentedClass.class)));
+        assertArrayEquals("a=b".getBytes(), entryBytes("org/robolectric/bytecode/some.properties"));
+    }
+
+    @Test public void shouldWriteFingerprintToManifest() throws Exception {
+        JarFile jarFile = new JarFile(outputJar);
+        try {
+            assertEquals(JarInstrumenter.fingerprintFor(new Setup()),
+                    jarFile.getManifest().getMainAttributes().getValue(JarInstrumenter.FINGERPRINT_ATTRIBUTE));
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    @Test public void shouldRecognizePreinstrumentedJars() throws Exception {
+        assertTrue(JarInstrumenter.isPreinstrumentedFor(outputJar.toURI().toURL(), new Setup()));
+        assertFalse(JarInstrumenter.isPreinstrumentedFor(inputJar.toURI().toURL(), new Setup()));
+    }
+
+    @Test public void shouldComplainAboutJarsInstrumentedForADifferentSetup() throws Exception {
+        try {
+            JarInstrumenter.isPreinstrumentedFor(outputJar.toURI().toURL(), new Setup() {});
+            fail("should have complained");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test public void shouldLoadPreinstrumentedClassesWithoutInstrumentingThem() throws Exception {
+        final byte[][] instrumented = new byte[1][];
+        AsmInstrumentingClassLoader classLoader = new AsmInstrumentingClassLoader(new Setup(), outputJar.toURI().toURL()) {
+            @Override
+            public byte[] instrument(String className, byte[] origClassBytes) throws ClassNotFoundException {
+                instrumented[0] = origClassBytes;
+                return super.instrument(className, origClassBytes);
+            }
+        };
+
+        assertNotNull(classLoader.loadClass(AnExampleClass.class.getName()));
+        assertEquals(null, instrumented[0]);
+    }
+
+    private static String classFileName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/') + ".class";
+    }
+
+    private static byte[] classBytes(Class<?> clazz) throws IOException {
+        InputStream in = clazz.getClassLoader().getResourceAsStream(classFileName(clazz));
+        try {
+            return readBytes(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private byte[] entryBytes(String name) throws IOException {
+        JarFile jarFile = new JarFile(outputJar);
+        try {
+            JarEntry entry = jarFile.getJarEntry(name);
+            assertNotNull(name, entry);
+            return readBytes(jarFile.getInputStream(entry));
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    private static void addEntry(JarOutputStream out, String name, byte[] bytes) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+    }
+}
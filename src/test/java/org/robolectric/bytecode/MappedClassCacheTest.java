@@ -0,0 +1,95 @@
+package org.robolectric.bytecode;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class MappedClassCacheTest {
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test public void shouldReturnAddedClasses() throws Exception {
+        MappedClassCache cache = new MappedClassCache(cachePath(), 1);
+        cache.addClass("a.Foo", new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.getClassBytesFor("a.Foo"));
+        assertNull(cache.getClassBytesFor("a.Bar"));
+    }
+
+    @Test public void shouldReadAddedClassesBackFromTheDataFile() throws Exception {
+        MappedClassCache cache = new MappedClassCache(cachePath(), 1);
+        cache.addClass("a.Foo", new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.getClassBytesFor("a.Foo"));
+        cache.addClass("a.Bar", new byte[]{4, 5});
+
+        RandomAccessFile data = new RandomAccessFile(new File(cachePath() + "-v1.dat"), "rw");
+        try {
+            data.seek(3);
+            data.write(new byte[]{6, 7});
+        } finally {
+            data.close();
+        }
+
+        assertArrayEquals(new byte[]{6, 7}, cache.getClassBytesFor("a.Bar"));
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.getClassBytesFor("a.Foo"));
+    }
+
+    @Test public void shouldReadClassesAddedByEarlierInstances() throws Exception {
+        MappedClassCache cache = new MappedClassCache(cachePath(), 1);
+        cache.addClass("a.Foo", new byte[]{1, 2, 3});
+        cache.addClass("a.Bar", new byte[]{4, 5});
+
+        MappedClassCache nextCache = new MappedClassCache(cachePath(), 1);
+        assertArrayEquals(new byte[]{1, 2, 3}, nextCache.getClassBytesFor("a.Foo"));
+        assertArrayEquals(new byte[]{4, 5}, nextCache.getClassBytesFor("a.Bar"));
+    }
+
+    @Test public void shouldAppendToExistingCache() throws Exception {
+        new MappedClassCache(cachePath(), 1).addClass("a.Foo", new byte[]{1, 2, 3});
+        new MappedClassCache(cachePath(), 1).addClass("a.Bar", new byte[]{4, 5});
+
+        MappedClassCache cache = new MappedClassCache(cachePath(), 1);
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.getClassBytesFor("a.Foo"));
+        assertArrayEquals(new byte[]{4, 5}, cache.getClassBytesFor("a.Bar"));
+    }
+
+    @Test public void shouldIgnoreCachesFromOtherVersions() throws Exception {
+        new MappedClassCache(cachePath(), 1).addClass("a.Foo", new byte[]{1, 2, 3});
+        assertNull(new MappedClassCache(cachePath(), 2).getClassBytesFor("a.Foo"));
+    }
+
+    @Test public void shouldStartFreshEachTimeForVersionMinusOne() throws Exception {
+        MappedClassCache cache = new MappedClassCache(cachePath(), -1);
+        cache.addClass("a.Foo", new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.getClassBytesFor("a.Foo"));
+
+        assertNull(new MappedClassCache(cachePath(), -1).getClassBytesFor("a.Foo"));
+    }
+
+    @Test public void shouldIgnoreTornIndexEntries() throws Exception {
+        new MappedClassCache(cachePath(), 1).addClass("a.Foo", new byte[]{1, 2, 3});
+        File indexFile = new File(cachePath() + "-v1.idx");
+        RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+        index.setLength(index.length() - 2);
+        index.close();
+
+        MappedClassCache cache = new MappedClassCache(cachePath(), 1);
+        assertNull(cache.getClassBytesFor("a.Foo"));
+
+        cache.addClass("a.Bar", new byte[]{4, 5});
+        assertArrayEquals(new byte[]{4, 5}, new MappedClassCache(cachePath(), 1).getClassBytesFor("a.Bar"));
+    }
+
+    @Test public void shouldNeverBeWriting() throws Exception {
+        assertFalse(new MappedClassCache(cachePath(), 1).isWriting());
+    }
+
+    private String cachePath() {
+        return new File(tmp.getRoot(), "classes").getAbsolutePath();
+    }
+}
@@ -110,6 +110,58 @@ public class ShadowWranglerTest {
         assertThat(shadowOf(textFoo), instanceOf(ShadowTextFoo.class));
     }
 
+    @Test
+    public void shouldReuseInvocationPlansForRepeatedCalls() throws Exception {
+        bindShadowClass(ShadowFoo.class);
+        ShadowWrangler shadowWrangler = Robolectric.getShadowWrangler();
+
+        Foo foo = new Foo(name);
+        foo.getName();
+        long misses = shadowWrangler.getInvocationPlanMisses();
+        long hits = shadowWrangler.getInvocationPlanHits();
+
+        foo.getName();
+        assertEquals(misses, shadowWrangler.getInvocationPlanMisses());
+        assertEquals(hits + 1, shadowWrangler.getInvocationPlanHits());
+    }
+
+    @Test
+    public void shouldDiscardInvocationPlansWhenBindingsChange() throws Exception {
+        bindShadowClass(ShadowFoo.class);
+        Foo foo = new Foo(name);
+        assertSame(name, foo.getName());
+
+        bindShadowClass(ExceptionThrowingShadowFoo.class);
+        try {
+            new Foo(name).getName();
+            fail("should have used the new shadow");
+        } catch (Exception e) {
+            assertEquals(IOException.class, e.getClass());
+        }
+    }
+
+    @Test
+    public void shouldGoBackToDefaultBindingsOnReset() throws Exception {
+        ShadowWrangler shadowWrangler = new ShadowWrangler(new Setup());
+        shadowWrangler.bindShadowClass(Foo.class, WithEquals.class, false);
+        shadowWrangler.rememberDefaultBindings();
+
+        shadowWrangler.bindShadowClass(Foo.class, WithToString.class, false);
+        assertEquals(WithToString.class, shadowWrangler.shadowFor(new Foo(name)).getClass());
+
+        shadowWrangler.reset();
+        assertEquals(WithEquals.class, shadowWrangler.shadowFor(new Foo(name)).getClass());
+    }
+
+    @Test
+    public void shouldClearBindingsOnResetWithoutDefaults() throws Exception {
+        ShadowWrangler shadowWrangler = new ShadowWrangler(new Setup());
+        shadowWrangler.bindShadowClass(Foo.class, WithEquals.class, false);
+
+        shadowWrangler.reset();
+        assertEquals(Object.class, shadowWrangler.shadowFor(new Foo(name)).getClass());
+    }
+
     @Test
     public void testPrimitiveArrays() throws Exception {
         Class<?> objArrayClass = ShadowWrangler.loadClass("java.lang.Object[]", getClass().getClassLoader());
@@ -0,0 +1,185 @@
+package org.robolectric.daemon;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.robolectric.util.Transcript;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RobolectricDaemonTest {
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private RobolectricDaemon daemon;
+    private Thread daemonThread;
+    private Transcript transcript;
+    private RunNotifier notifier;
+
+    @Before public void setUp() throws Exception {
+        System.setProperty(DaemonProtocol.TOKEN_DIRECTORY_PROPERTY, tmp.getRoot().getPath());
+        daemon = new RobolectricDaemon(0);
+        daemonThread = new Thread() {
+            @Override public void run() {
+                try {
+                    daemon.serve();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        daemonThread.start();
+
+        transcript = new Transcript();
+        notifier = new RunNotifier();
+        notifier.addListener(new RunListener() {
+            @Override public void testStarted(Description description) throws Exception {
+                transcript.add("started " + description.getMethodName());
+            }
+
+            @Override public void testFailure(Failure failure) throws Exception {
+                transcript.add("failed " + failure.getDescription().getMethodName() + ": " + failure.getMessage());
+            }
+
+            @Override public void testIgnored(Description description) throws Exception {
+                transcript.add("ignored " + description.getMethodName());
+            }
+
+            @Override public void testFinished(Description description) throws Exception {
+                transcript.add("finished " + description.getMethodName());
+            }
+        });
+    }
+
+    @After public void tearDown() throws Exception {
+        DaemonTestRunner.stop(daemon.getPort());
+        daemonThread.join(5000);
+        System.clearProperty(DaemonProtocol.TOKEN_DIRECTORY_PROPERTY);
+    }
+
+    @Test public void shouldReportEventsFromTheDaemon() throws Exception {
+        new DaemonTestRunner(SampleTest.class, daemon.getPort()).run(notifier);
+
+        List<String> events = transcript.getEvents();
+        assertEquals(6, events.size());
+        assertTrue(events.contains("started passing"));
+        assertTrue(events.contains("finished passing"));
+        assertTrue(events.contains("started failing"));
+        assertTrue(events.contains("failed failing: java.lang.AssertionError: expected:<1> but was:<2>"));
+        assertTrue(events.contains("finished failing"));
+        assertTrue(events.contains("ignored ignored"));
+    }
+
+    @Test public void shouldDescribeTestsWithoutCreatingTheLocalRunner() throws Exception {
+        Description description = new DaemonTestRunner(SampleTest.class, daemon.getPort()).getDescription();
+        assertEquals(3, description.getChildren().size());
+    }
+
+    @Test public void shouldPreserveRemoteStackTraces() throws Exception {
+        final Throwable[] thrown = new Throwable[1];
+        notifier.addListener(new RunListener() {
+            @Override public void testFailure(Failure failure) throws Exception {
+                thrown[0] = failure.getException();
+            }
+        });
+
+        new DaemonTestRunner(SampleTest.class, daemon.getPort()).run(notifier);
+
+        boolean foundTestMethod = false;
+        for (StackTraceElement element : thrown[0].getStackTrace()) {
+            if (element.getClassName().equals(SampleTest.class.getName()) && element.getMethodName().equals("failing")) {
+                foundTestMethod = true;
+            }
+        }
+        assertTrue(foundTestMethod);
+    }
+
+    @Test public void shouldRunLocallyWhenNoDaemonIsListening() throws Exception {
+        new DaemonTestRunner(LocalSampleTest.class, -1).run(notifier);
+        transcript.assertEventsSoFar("started passing", "finished passing");
+    }
+
+    @Test public void shouldKeepServingAfterReload() throws Exception {
+        DaemonTestRunner.reload(daemon.getPort());
+        new DaemonTestRunner(LocalSampleTest.class, daemon.getPort()).run(notifier);
+        transcript.assertEventsSoFar("started passing", "finished passing");
+    }
+
+    @Test public void shouldRejectConnectionsWithoutTheToken() throws Exception {
+        Socket socket = new Socket(InetAddress.getByName(null), daemon.getPort());
+        try {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("not the token");
+            out.writeUTF(DaemonProtocol.RUN);
+            out.writeUTF(LocalSampleTest.class.getName());
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(DaemonProtocol.ERROR, in.readUTF());
+            assertTrue(in.readUTF().startsWith("daemon rejected the connection"));
+            assertEquals(DaemonProtocol.DONE, in.readUTF());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test public void shouldRunLocallyWhenTheTokenCantBeRead() throws Exception {
+        File tokenFile = DaemonProtocol.tokenFileFor(daemon.getPort());
+        File movedTokenFile = new File(tmp.getRoot(), "moved.token");
+        assertTrue(tokenFile.renameTo(movedTokenFile));
+        try {
+            new DaemonTestRunner(ThreadRecordingTest.class, daemon.getPort()).run(notifier);
+        } finally {
+            assertTrue(movedTokenFile.renameTo(tokenFile)); // so tearDown can stop it
+        }
+        assertSame(Thread.currentThread(), ThreadRecordingTest.ranOn);
+
+        new DaemonTestRunner(ThreadRecordingTest.class, daemon.getPort()).run(notifier);
+        assertSame(daemonThread, ThreadRecordingTest.ranOn);
+    }
+
+    public static class SampleTest {
+        @Test public void passing() throws Exception {
+        }
+
+        @Test public void failing() throws Exception {
+            assertEquals(1, 2);
+        }
+
+        @Ignore @Test public void ignored() throws Exception {
+            fail();
+        }
+    }
+
+    @DaemonTestRunner.RunLocallyWith(BlockJUnit4ClassRunner.class)
+    public static class LocalSampleTest {
+        @Test public void passing() throws Exception {
+        }
+    }
+
+    @DaemonTestRunner.RunLocallyWith(BlockJUnit4ClassRunner.class)
+    public static class ThreadRecordingTest {
+        static Thread ranOn;
+
+        @Test public void recordThread() throws Exception {
+            ranOn = Thread.currentThread();
+        }
+    }
+}
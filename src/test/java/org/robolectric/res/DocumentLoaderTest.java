@@ -0,0 +1,79 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class DocumentLoaderTest {
+    @Test public void shouldHandDocumentsToLoadersInOrderOnTheCallingThread() throws Exception {
+        RecordingXmlLoader first = new RecordingXmlLoader();
+        RecordingXmlLoader second = new RecordingXmlLoader();
+        new DocumentLoader(first, second).loadResourceXmlSubDirs(testResources(), "layout");
+
+        assertTrue(first.fileNames.size() > 2);
+        assertEquals(first.fileNames, second.fileNames);
+        assertEquals("layout/activity_list_item.xml", first.fileNames.get(0));
+        int land = first.fileNames.indexOf("layout-land/different_screen_sizes.xml");
+        assertTrue(land > 0);
+        assertTrue(land < first.fileNames.indexOf("layout-land/multi_orientation.xml"));
+        for (Thread thread : first.threads) {
+            assertSame(Thread.currentThread(), thread);
+        }
+    }
+
+    @Test public void shouldHandTheSameDocumentToEachLoader() throws Exception {
+        RecordingXmlLoader first = new RecordingXmlLoader();
+        RecordingXmlLoader second = new RecordingXmlLoader();
+        new DocumentLoader(first, second).loadResourceXmlDir(testResources(), "xml");
+
+        assertEquals(1, first.documents.size());
+        assertSame(first.documents.get(0), second.documents.get(0));
+    }
+
+    @Test public void shouldntLendTheCallersContextClassLoaderToParserThreads() throws Exception {
+        final Thread thread = Thread.currentThread();
+        final List<ClassLoader> contextClassLoaders = Collections.synchronizedList(new ArrayList<ClassLoader>());
+        DocumentLoader documentLoader = new DocumentLoader(new RecordingXmlLoader()) {
+            @Override Document parse(File xmlFile) throws Exception {
+                // with a single processor, files are parsed right on the calling thread
+                if (Thread.currentThread() != thread) contextClassLoaders.add(Thread.currentThread().getContextClassLoader());
+                return super.parse(xmlFile);
+            }
+        };
+
+        ClassLoader originalClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(new URLClassLoader(new URL[0]));
+        try {
+            documentLoader.loadResourceXmlSubDirs(testResources(), "layout");
+        } finally {
+            thread.setContextClassLoader(originalClassLoader);
+        }
+
+        for (ClassLoader contextClassLoader : contextClassLoaders) {
+            assertSame(DocumentLoader.class.getClassLoader(), contextClassLoader);
+        }
+    }
+
+    private static class RecordingXmlLoader extends XmlLoader {
+        final List<String> fileNames = new ArrayList<String>();
+        final List<Document> documents = new ArrayList<Document>();
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        @Override protected void processResourceXml(File xmlFile, Document document, XmlContext xmlContext) throws Exception {
+            fileNames.add(xmlFile.getParentFile().getName() + "/" + xmlFile.getName());
+            documents.add(document);
+            threads.add(Thread.currentThread());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class IntResNameMapTest {
+    @Test public void shouldFindEveryNameAfterGrowing() throws Exception {
+        IntResNameMap map = new IntResNameMap();
+        for (int i = 0; i < 1000; i++) {
+            map.put(0x7f010000 + i, new ResName("pkg", "id", "id" + i));
+        }
+
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("id" + i, map.get(0x7f010000 + i).name);
+        }
+        assertNull(map.get(0x7f020000));
+        assertNull(map.get(0));
+        assertEquals(0x7f010000 + 999, map.maxKey());
+    }
+
+    @Test public void shouldReplaceNamesForTheSameId() throws Exception {
+        IntResNameMap map = new IntResNameMap();
+        map.put(1, new ResName("pkg", "id", "first"));
+        map.put(1, new ResName("pkg", "id", "second"));
+
+        assertEquals(1, map.size());
+        assertEquals("second", map.get(1).name);
+        assertFalse(map.containsKey(2));
+    }
+}
@@ -0,0 +1,56 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.util.TestUtil.TEST_PACKAGE;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class PackageResourceLoaderTest {
+    @Test public void shouldOnlyLoadTheCategoriesThatAreAskedFor() throws Exception {
+        PackageResourceLoader resourceLoader = new PackageResourceLoader(testResources());
+
+        assertEquals("Hello", resourceLoader.getStringValue(new ResName(TEST_PACKAGE, "string", "hello"), ""));
+        assertTrue(resourceLoader.isInitialized(XResourceLoader.Category.VALUES));
+        assertFalse(resourceLoader.isInitialized(XResourceLoader.Category.LAYOUT));
+        assertEquals(0, resourceLoader.viewNodes.size());
+
+        resourceLoader.getLayoutViewNode(new ResName(TEST_PACKAGE, "layout", "main"), "");
+        assertTrue(resourceLoader.isInitialized(XResourceLoader.Category.LAYOUT));
+        assertTrue(resourceLoader.viewNodes.size() > 0);
+        assertFalse(resourceLoader.isInitialized(XResourceLoader.Category.MENU));
+        assertFalse(resourceLoader.isInitialized(XResourceLoader.Category.XML));
+    }
+
+    @Test public void shouldLoadEachCategoryOnceWhenAskedForFromSeveralThreads() throws Exception {
+        final CountingResourceLoader resourceLoader = new CountingResourceLoader();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override public void run() {
+                    resourceLoader.getStringValue(new ResName(TEST_PACKAGE, "string", "hello"), "");
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, resourceLoader.timesLoaded);
+    }
+
+    private static class CountingResourceLoader extends PackageResourceLoader {
+        volatile int timesLoaded;
+
+        CountingResourceLoader() {
+            super(testResources());
+        }
+
+        @Override protected void loadOtherResources(ResourcePath resourcePath) {
+            timesLoaded++;
+        }
+    }
+}
@@ -4,17 +4,25 @@ import org.robolectric.R;
 import org.robolectric.TestRunners;
 import org.robolectric.util.TestUtil;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 import static org.robolectric.util.TestUtil.resourceFile;
 import static org.robolectric.util.TestUtil.testResources;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 @RunWith(TestRunners.WithDefaults.class)
 public class RawResourceLoaderTest {
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
 
     private RawResourceLoader rawResourceLoader;
 
@@ -33,4 +41,45 @@ public class RawResourceLoaderTest {
         InputStream is = rawResourceLoader.getValue(R.raw.raw_no_ext);
         assertEquals("no ext file contents", TestUtil.readString(is));
     }
+
+    @Test
+    public void shouldReturnTheSameContentsEachTime() throws Exception {
+        assertEquals("raw txt file contents", TestUtil.readString(rawResourceLoader.getValue(R.raw.raw_resource)));
+        assertEquals("raw txt file contents", TestUtil.readString(rawResourceLoader.getValue(R.raw.raw_resource)));
+    }
+
+    @Test
+    public void shouldReturnNullForUnknownResources() throws Exception {
+        assertNull(rawResourceLoader.getValue(R.string.hello));
+    }
+
+    @Test
+    public void shouldMapLargeRawResourcesWhenAsked() throws Exception {
+        byte[] contents = new byte[RawResourceLoader.SMALL_FILE_SIZE * 2];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) i;
+        }
+        File rawDir = tmp.newFolder("raw");
+        OutputStream out = new FileOutputStream(new File(rawDir, "big.bin"));
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        ResourceExtractor resourceIndex = new ResourceExtractor();
+        resourceIndex.resourceIdToResName.put(R.raw.raw_resource, new ResName("org.robolectric", "raw", "big"));
+
+        RawResourceLoader mappingLoader = new RawResourceLoader(resourceIndex, tmp.getRoot(), true);
+        for (int i = 0; i < 2; i++) {
+            InputStream is = mappingLoader.getValue(R.raw.raw_resource);
+            assertEquals(contents.length, is.available());
+            byte[] read = new byte[contents.length];
+            int offset = 0, count;
+            while ((count = is.read(read, offset, read.length - offset)) > 0) {
+                offset += count;
+            }
+            assertEquals(-1, is.read());
+            assertArrayEquals(contents, read);
+        }
+    }
 }
@@ -2,6 +2,8 @@ package org.robolectric.res;
 
 import org.junit.Test;
 
+import java.io.File;
+
 import static org.junit.Assert.assertEquals;
 
 public class ResBundleTest {
@@ -17,6 +19,41 @@ public class ResBundleTest {
                 "port-notouch-12key"), "en-GB-port-hdpi-notouch-12key").value);
     }
 
+    @Test
+    public void shouldPickTheSameValuesOnceFrozen() throws Exception {
+        ResBundle.Values<String> values = asValues("", "en", "fr-rCA", "en-port", "en-notouch-12key", "port-ldpi", "port-notouch-12key");
+        values.freeze();
+
+        assertEquals("en-port", ResBundle.pick(values, "en-GB-port-hdpi-notouch-12key").value);
+        assertEquals("en-port", ResBundle.pick(values, "en-GB-port-hdpi-notouch-12key").value);
+        assertEquals("", ResBundle.pick(values, "").value);
+        assertEquals("fr-rCA", ResBundle.pick(values, "fr-rCA").value);
+        assertEquals("port-ldpi", ResBundle.pick(values, "de-port-ldpi").value);
+    }
+
+    @Test
+    public void shouldHandleMoreThan32Values() throws Exception {
+        String[] qualifierses = new String[40];
+        for (int i = 0; i < qualifierses.length; i++) {
+            qualifierses[i] = "v" + i;
+        }
+        assertEquals("v35", ResBundle.pick(asValues(qualifierses), "v35").value);
+    }
+
+    @Test
+    public void shouldKeepValuesSortedByQualifiersAsTheyArePut() throws Exception {
+        ResBundle<String> resBundle = new ResBundle<String>();
+        resBundle.put("string", "greeting", "hallo", new XmlLoader.XmlContext("pkg", new File("res/values-de/strings.xml")));
+        resBundle.put("string", "greeting", "hello", new XmlLoader.XmlContext("pkg", new File("res/values/strings.xml")));
+        resBundle.put("string", "greeting", "bonjour", new XmlLoader.XmlContext("pkg", new File("res/values-fr/strings.xml")));
+        resBundle.makeImmutable();
+
+        assertEquals("hello", resBundle.get(new ResName("pkg", "string", "greeting"), ""));
+        assertEquals("hallo", resBundle.get(new ResName("pkg", "string", "greeting"), "de"));
+        assertEquals("bonjour", resBundle.get(new ResName("pkg", "string", "greeting"), "fr-land"));
+        assertEquals(null, resBundle.get(new ResName("pkg", "string", "farewell"), ""));
+    }
+
     private ResBundle.Values<String> asValues(String... qualifierses) {
         ResBundle.Values<String> values = new ResBundle.Values<String>();
         for (String qualifiers : qualifierses) {
@@ -0,0 +1,45 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class ResNameTest {
+    @Test public void shouldParseFullyQualifiedNames() throws Exception {
+        ResName resName = new ResName("some.package:string/hello/there");
+        assertEquals("some.package", resName.namespace);
+        assertEquals("string", resName.type);
+        assertEquals("hello/there", resName.name);
+        assertEquals(new ResName("some.package", "string", "hello/there"), resName);
+        assertEquals("", new ResName(":attr/layout").namespace);
+    }
+
+    @Test public void shouldRejectNamesThatAreNotFullyQualified() throws Exception {
+        for (String name : new String[] {"string/hello", "pkg:string", "pkg:/hello", "pkg:string/", "xmlns:android/x"}) {
+            try {
+                new ResName(name);
+                fail("should have rejected " + name);
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test public void shouldInternEqualNamesToOneInstance() throws Exception {
+        ResName first = new ResName("pkg", "string", "interned");
+        ResName second = new ResName("pkg:string/interned");
+        assertNotSame(first, second);
+        assertSame(first.intern(), second.intern());
+    }
+
+    @Test public void shouldIgnoreReferenceMarkersWhenLookingUpIds() throws Exception {
+        ResourceIndex resourceIndex = new ResourceExtractor(testResources());
+        Integer id = resourceIndex.getResourceId(new ResName("org.robolectric", "id", "burritos"));
+        assertEquals(id, ResName.getResourceId(resourceIndex, "@+id/burritos", "org.robolectric"));
+        assertEquals(id, ResName.getResourceId(resourceIndex, "@org.robolectric:id/burritos", "android"));
+    }
+}
@@ -0,0 +1,82 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResolverTest {
+    private XResourceLoader.StringResolver resolver;
+    private XmlLoader.XmlContext defaultContext;
+    private XmlLoader.XmlContext frenchContext;
+
+    @Before public void setUp() throws Exception {
+        resolver = new XResourceLoader.StringResolver();
+        defaultContext = new XmlLoader.XmlContext("pkg", new File("res/values/strings.xml"));
+        frenchContext = new XmlLoader.XmlContext("pkg", new File("res/values-fr/strings.xml"));
+    }
+
+    @Test public void shouldFollowReferenceChainsForEachQualifier() throws Exception {
+        resolver.put("string", "greeting", "@string/hello", defaultContext);
+        resolver.put("string", "hello", "@string/hi", defaultContext);
+        resolver.put("string", "hi", "hi", defaultContext);
+        resolver.put("string", "hi", "salut", frenchContext);
+        resolver.makeImmutable();
+        resolver.checkReferences();
+
+        assertEquals("hi", resolver.resolve(new ResName("pkg:string/greeting"), ""));
+        assertEquals("salut", resolver.resolve(new ResName("pkg:string/greeting"), "fr"));
+        assertEquals(null, resolver.resolve(new ResName("pkg:string/missing"), ""));
+    }
+
+    @Test public void shouldRememberResolvedArrays() throws Exception {
+        resolver.put("string", "hi", "hi", defaultContext);
+        resolver.putArray("string-array", "greetings", Arrays.asList("@string/hi", "hello"), defaultContext);
+        resolver.makeImmutable();
+
+        ResName resName = new ResName("pkg:string-array/greetings");
+        assertEquals(Arrays.asList("hi", "hello"), resolver.resolveArray(resName, ""));
+        assertSame(resolver.resolveArray(resName, ""), resolver.resolveArray(resName, ""));
+    }
+
+    @Test public void shouldReportReferenceCyclesWhenCheckedButOnlyFailWhenTheyAreResolved() throws Exception {
+        resolver.put("string", "a", "@string/b", defaultContext);
+        resolver.put("string", "b", "@string/a", frenchContext);
+        resolver.put("string", "b", "b", defaultContext);
+        resolver.put("string", "c", "c", frenchContext);
+        resolver.makeImmutable();
+
+        List<String> cycles = resolver.checkReferences();
+        assertEquals(1, cycles.size());
+        assertTrue(cycles.get(0), cycles.get(0).contains("\"fr\""));
+
+        assertEquals("b", resolver.resolve(new ResName("pkg:string/a"), ""));
+        assertEquals("c", resolver.resolve(new ResName("pkg:string/c"), "fr"));
+        try {
+            resolver.resolve(new ResName("pkg:string/a"), "fr");
+            fail("should have found a cycle");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("\"fr\""));
+        }
+    }
+
+    @Test public void shouldRememberArraysThatDontExist() throws Exception {
+        resolver.makeImmutable();
+
+        assertEquals(null, resolver.resolveArray(new ResName("pkg:string-array/missing"), ""));
+        assertEquals(null, resolver.resolveArray(new ResName("pkg:string-array/missing"), ""));
+    }
+
+    @Test public void shouldIgnoreValuesThatOnlyLookLikeReferences() throws Exception {
+        resolver.put("string", "twitter", "@robolectric", defaultContext);
+        resolver.makeImmutable();
+        resolver.checkReferences();
+    }
+}
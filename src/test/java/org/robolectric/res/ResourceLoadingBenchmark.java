@@ -0,0 +1,86 @@
+package org.robolectric.res;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Compares loading values directories through DOM documents and through the streaming loader, e.g. on an SDK's
+ * resources:
+ *
+ * <pre>
+ *   java -cp ... org.robolectric.res.ResourceLoadingBenchmark $ANDROID_HOME/platforms/android-16/data/res [rounds]
+ * </pre>
+ *
+ * Not a test; run it by hand when changing how values are loaded.
+ */
+public class ResourceLoadingBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: " + ResourceLoadingBenchmark.class.getName() + " <res dir> [rounds]");
+            System.exit(1);
+        }
+        ResourcePath resourcePath = new ResourcePath(android.R.class, new File(args[0]), null);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        for (int i = 0; i < 3; i++) { // warm up
+            loadWithDom(resourcePath);
+            loadWithStax(resourcePath);
+        }
+
+        long domNanos = Long.MAX_VALUE, staxNanos = Long.MAX_VALUE;
+        long domPeakHeap = 0, staxPeakHeap = 0;
+        for (int i = 0; i < rounds; i++) {
+            startMeasuring();
+            long start = System.nanoTime();
+            loadWithDom(resourcePath);
+            domNanos = Math.min(domNanos, System.nanoTime() - start);
+            domPeakHeap = Math.max(domPeakHeap, peakHeapUsed());
+
+            startMeasuring();
+            start = System.nanoTime();
+            loadWithStax(resourcePath);
+            staxNanos = Math.min(staxNanos, System.nanoTime() - start);
+            staxPeakHeap = Math.max(staxPeakHeap, peakHeapUsed());
+        }
+
+        System.out.println(String.format("DOM:  %6d ms, peak heap %6d KB", domNanos / 1000000, domPeakHeap / 1024));
+        System.out.println(String.format("StAX: %6d ms, peak heap %6d KB", staxNanos / 1000000, staxPeakHeap / 1024));
+    }
+
+    private static void loadWithDom(ResourcePath resourcePath) throws Exception {
+        new DocumentLoader(valueLoaders()).loadResourceXmlSubDirs(resourcePath, "values");
+    }
+
+    private static void loadWithStax(ResourcePath resourcePath) throws Exception {
+        new StaxDocumentLoader(valueLoaders()).loadResourceXmlSubDirs(resourcePath, "values");
+    }
+
+    private static ResourceElementLoader[] valueLoaders() {
+        return new ResourceElementLoader[] {
+                new ValueResourceLoader(new ResBundle<String>(), "bool", false),
+                new ValueResourceLoader(new ResBundle<String>(), "color", false),
+                new ValueResourceLoader(new ResBundle<String>(), "dimen", false),
+                new ValueResourceLoader(new ResBundle<String>(), "integer", true),
+                new PluralResourceLoader(null, new ResBundle<PluralResourceLoader.PluralRules>()),
+                new ValueResourceLoader(new ResBundle<String>(), "string", true),
+                new AttrResourceLoader()
+        };
+    }
+
+    private static void startMeasuring() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeapUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) used += pool.getPeakUsage().getUsed();
+        }
+        return used;
+    }
+}
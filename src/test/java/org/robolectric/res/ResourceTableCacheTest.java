@@ -0,0 +1,265 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.robolectric.R;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.util.TestUtil.resourceFile;
+
+public class ResourceTableCacheTest {
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+    private ResourceTableCache resourceTableCache;
+    private ResourcePath resourcePath;
+
+    @Before public void setUp() throws Exception {
+        resourceTableCache = new ResourceTableCache(tmp.newFolder("cache"));
+        File resDir = new File(tmp.getRoot(), "res");
+        copy(resourceFile("res"), resDir);
+        resourcePath = new ResourcePath(R.class, resDir, resourceFile("assets"));
+    }
+
+    @Test public void shouldLoadResourcesFromTheTableOnceItsWritten() throws Exception {
+        CountingResourceLoader first = load();
+        assertEquals(1, first.timesLoaded);
+        assertTrue(resourceTableCache.tableFileFor(resourcePath, XResourceLoader.Category.VALUES).isFile());
+
+        CountingResourceLoader second = load();
+        assertEquals(0, second.timesLoaded);
+        assertSameResources(first, second);
+    }
+
+    @Test public void shouldLoadFromXmlAgainWhenAResourceFileChanges() throws Exception {
+        load();
+        File stringsFile = new File(resourcePath.resourceBase, "values/strings.xml");
+        assertTrue(stringsFile.setLastModified(stringsFile.lastModified() - 10000));
+
+        assertEquals(1, load().timesLoaded);
+        assertEquals(0, load().timesLoaded);
+    }
+
+    @Test public void shouldOnlyLoadTheCategoryWhoseFilesChangedFromXmlAgain() throws Exception {
+        load();
+        File layoutFile = new File(resourcePath.resourceBase, "layout/main.xml");
+        File layoutTableFile = resourceTableCache.tableFileFor(resourcePath, XResourceLoader.Category.LAYOUT);
+        assertTrue(layoutFile.setLastModified(layoutFile.lastModified() - 10000));
+        assertTrue(layoutTableFile.delete());
+
+        assertEquals(0, load().timesLoaded);
+        assertTrue(layoutTableFile.isFile());
+    }
+
+    @Test public void shouldEvictTheLeastRecentlyUsedTablesWhenOverItsMaximumSize() throws Exception {
+        File cacheDir = tmp.newFolder("bounded-cache");
+        resourceTableCache = new ResourceTableCache(cacheDir, "android-16-", 1);
+        load();
+
+        File[] tableFiles = cacheDir.listFiles();
+        assertEquals(1, tableFiles.length);
+        assertEquals(resourceTableCache.tableFileFor(resourcePath, XResourceLoader.Category.XML), tableFiles[0]);
+        assertTrue(tableFiles[0].getName().startsWith("android-16-"));
+        assertEquals(1, load().timesLoaded);
+    }
+
+    @Test public void shouldLoadFromXmlAgainWhenTheTableWasWrittenByAnotherBuildOfTheLoader() throws Exception {
+        File cacheDir = tmp.newFolder("versioned-cache");
+        resourceTableCache = new ResourceTableCache(cacheDir, "", 0, "old-build");
+        load();
+
+        resourceTableCache = new ResourceTableCache(cacheDir, "", 0, "new-build");
+        assertEquals(1, load().timesLoaded);
+        assertEquals(0, load().timesLoaded);
+    }
+
+    @Test public void shouldKnowWhichBuildOfTheLoaderItIs() throws Exception {
+        assertNotNull(ResourceTableCache.getLoaderVersion());
+    }
+
+    @Test public void shouldLoadFromXmlAgainWhenTheTableIsGarbled() throws Exception {
+        load();
+        File tableFile = resourceTableCache.tableFileFor(resourcePath, XResourceLoader.Category.VALUES);
+        OutputStream out = new FileOutputStream(tableFile, true);
+        try {
+            out.write("garbage".getBytes());
+        } finally {
+            out.close();
+        }
+
+        assertEquals(1, load().timesLoaded);
+        assertEquals(0, load().timesLoaded);
+    }
+
+    @Test public void shouldLoadFromXmlAgainWhenATableThatPassesItsChecksCantBeRead() throws Exception {
+        CountingResourceLoader first = load();
+        File tableFile = resourceTableCache.tableFileFor(resourcePath, XResourceLoader.Category.VALUES);
+        rewritePayload(tableFile, 16); // cut it short, but fix up its length and checksum
+
+        CountingResourceLoader second = load();
+        assertEquals(1, second.timesLoaded);
+        assertSameResources(first, second);
+        assertEquals(0, load().timesLoaded);
+    }
+
+    @Test public void shouldLoadOtherResourcesEveryTimeWithoutKeepingThemInTheTable() throws Exception {
+        CountingResourceLoader first = new CountingResourceLoader(resourcePath, resourceTableCache);
+        first.otherString = "from the first run";
+        first.initialize();
+        assertEquals(1, first.timesOtherResourcesLoaded);
+        assertEquals("from the first run", first.getStringValue(new ResName("org.robolectric:string/other"), ""));
+
+        CountingResourceLoader second = new CountingResourceLoader(resourcePath, resourceTableCache);
+        second.otherString = "from the second run";
+        second.initialize();
+        assertEquals(0, second.timesLoaded);
+        assertEquals(1, second.timesOtherResourcesLoaded);
+        assertEquals("from the second run", second.getStringValue(new ResName("org.robolectric:string/other"), ""));
+
+        CountingResourceLoader third = load();
+        assertEquals(0, third.timesLoaded);
+        assertEquals(null, third.getStringValue(new ResName("org.robolectric:string/other"), ""));
+    }
+
+    private static void rewritePayload(File tableFile, int bytesToDrop) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(tableFile));
+        byte[] header;
+        byte[] payload;
+        try {
+            int magic = in.readInt();
+            int version = in.readInt();
+            byte[] loaderVersion = new byte[in.readInt()];
+            in.readFully(loaderVersion);
+            byte[] fingerprint = new byte[in.readInt()];
+            in.readFully(fingerprint);
+            in.readLong(); // the old checksum
+            payload = new byte[in.readInt()];
+            in.readFully(payload);
+
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream headerOut = new DataOutputStream(headerBytes);
+            headerOut.writeInt(magic);
+            headerOut.writeInt(version);
+            headerOut.writeInt(loaderVersion.length);
+            headerOut.write(loaderVersion);
+            headerOut.writeInt(fingerprint.length);
+            headerOut.write(fingerprint);
+            header = headerBytes.toByteArray();
+        } finally {
+            in.close();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length - bytesToDrop);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tableFile));
+        try {
+            out.write(header);
+            out.writeLong(crc.getValue());
+            out.writeInt(payload.length - bytesToDrop);
+            out.write(payload, 0, payload.length - bytesToDrop);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void assertSameResources(ResourceLoader expected, ResourceLoader actual) {
+        assertEquals("Local Copy", actual.getStringValue(new ResName("org.robolectric:string/copy"), ""));
+        assertEquals(expected.getStringValue(new ResName("org.robolectric:string/hello"), "fr"),
+                actual.getStringValue(new ResName("org.robolectric:string/hello"), "fr"));
+        assertEquals(expected.getPluralStringValue(new ResName("org.robolectric:plurals/beer"), 2, ""),
+                actual.getPluralStringValue(new ResName("org.robolectric:plurals/beer"), 2, ""));
+        assertArrayEquals(expected.getIntegerArrayValue(new ResName("org.robolectric:array/zero_to_four_int_array"), ""),
+                actual.getIntegerArrayValue(new ResName("org.robolectric:array/zero_to_four_int_array"), ""));
+
+        ViewNode expectedViewNode = expected.getLayoutViewNode(new ResName("org.robolectric:layout/main"), "");
+        ViewNode actualViewNode = actual.getLayoutViewNode(new ResName("org.robolectric:layout/main"), "");
+        assertEquals(expectedViewNode.getName(), actualViewNode.getName());
+        assertEquals(expectedViewNode.getChildren().size(), actualViewNode.getChildren().size());
+        assertEquals(expectedViewNode.getAttributes().toString(), actualViewNode.getAttributes().toString());
+        assertEquals(expectedViewNode.getXmlContext().getXmlFile(), actualViewNode.getXmlContext().getXmlFile());
+
+        assertEquals(expected.getMenuNode(new ResName("org.robolectric:menu/test"), "").getChildren().size(),
+                actual.getMenuNode(new ResName("org.robolectric:menu/test"), "").getChildren().size());
+        assertEquals(expected.getPreferenceNode(new ResName("org.robolectric:xml/preferences"), "").getChildren().size(),
+                actual.getPreferenceNode(new ResName("org.robolectric:xml/preferences"), "").getChildren().size());
+
+        Document expectedDocument = expected.getXml(new ResName("org.robolectric:xml/preferences"), "");
+        Document actualDocument = actual.getXml(new ResName("org.robolectric:xml/preferences"), "");
+        Element actualElement = (Element) actualDocument.getDocumentElement().getElementsByTagName("PreferenceCategory").item(0);
+        assertEquals(((Element) expectedDocument.getDocumentElement().getElementsByTagName("PreferenceCategory").item(0))
+                .getAttributeNS("http://schemas.android.com/apk/res/android", "title"),
+                actualElement.getAttributeNS("http://schemas.android.com/apk/res/android", "title"));
+
+        assertTrue(((DrawableNode.ImageFile) actual.getDrawableNode(new ResName("org.robolectric:drawable/nine_patch_drawable"), "")).isNinePatch);
+        assertEquals("item", ((DrawableNode.Xml) actual.getDrawableNode(new ResName("org.robolectric:drawable/rainbow"), ""))
+                .document.getDocumentElement().getElementsByTagName("item").item(0).getNodeName());
+    }
+
+    private CountingResourceLoader load() {
+        CountingResourceLoader resourceLoader = new CountingResourceLoader(resourcePath, resourceTableCache);
+        resourceLoader.initialize();
+        return resourceLoader;
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        if (from.isDirectory()) {
+            to.mkdirs();
+            for (File file : from.listFiles()) {
+                copy(file, new File(to, file.getName()));
+            }
+        } else {
+            InputStream in = new FileInputStream(from);
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buf = new byte[8192];
+                int count;
+                while ((count = in.read(buf)) != -1) {
+                    out.write(buf, 0, count);
+                }
+            } finally {
+                in.close();
+                out.close();
+            }
+            to.setLastModified(from.lastModified());
+        }
+    }
+
+    private static class CountingResourceLoader extends PackageResourceLoader {
+        int timesLoaded;
+        int timesOtherResourcesLoaded;
+        String otherString;
+
+        CountingResourceLoader(ResourcePath resourcePath, ResourceTableCache resourceTableCache) {
+            super(resourcePath, resourceTableCache);
+        }
+
+        @Override void load(Category category) throws Exception {
+            if (category == Category.VALUES) timesLoaded++;
+            super.load(category);
+        }
+
+        @Override protected void loadOtherResources(ResourcePath resourcePath) {
+            timesOtherResourcesLoaded++;
+            if (otherString != null) {
+                stringResolver.put("string", "other", otherString,
+                        new XmlLoader.XmlContext(resourcePath.getPackageName(), new File(resourcePath.resourceBase, "values/other.xml")));
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.util.TestUtil.TEST_PACKAGE;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class StaxDocumentLoaderTest {
+    @Test public void shouldLoadTheSameValuesAsTheDomLoader() throws Exception {
+        ResBundle<String> domStrings = new ResBundle<String>();
+        ResBundle<String> domIntegers = new ResBundle<String>();
+        ResBundle<PluralResourceLoader.PluralRules> domPlurals = new ResBundle<PluralResourceLoader.PluralRules>();
+        AttrResourceLoader domAttrs = new AttrResourceLoader();
+        new DocumentLoader(new ValueResourceLoader(domStrings, "string", true), new ValueResourceLoader(domIntegers, "integer", true),
+                new PluralResourceLoader(null, domPlurals), domAttrs).loadResourceXmlSubDirs(testResources(), "values");
+
+        ResBundle<String> staxStrings = new ResBundle<String>();
+        ResBundle<String> staxIntegers = new ResBundle<String>();
+        ResBundle<PluralResourceLoader.PluralRules> staxPlurals = new ResBundle<PluralResourceLoader.PluralRules>();
+        AttrResourceLoader staxAttrs = new AttrResourceLoader();
+        new StaxDocumentLoader(new ValueResourceLoader(staxStrings, "string", true), new ValueResourceLoader(staxIntegers, "integer", true),
+                new PluralResourceLoader(null, staxPlurals), staxAttrs).loadResourceXmlSubDirs(testResources(), "values");
+
+        assertTrue(domStrings.size() > 0);
+        assertEquals(describe(domStrings), describe(staxStrings));
+        assertEquals(describe(domIntegers), describe(staxIntegers));
+        assertEquals(describePlurals(domPlurals), describePlurals(staxPlurals));
+        assertEquals(new TreeMap<String, String>(domAttrs.classEnumToValue), new TreeMap<String, String>(staxAttrs.classEnumToValue));
+        assertEquals(new TreeMap<String, AttrResourceLoader.EnumRef>(domAttrs.enumRefs).keySet(), new TreeMap<String, AttrResourceLoader.EnumRef>(staxAttrs.enumRefs).keySet());
+        assertEquals(new TreeMap<String, AttrResourceLoader.EnumDef>(domAttrs.enums).keySet(), new TreeMap<String, AttrResourceLoader.EnumDef>(staxAttrs.enums).keySet());
+        assertEquals(domAttrs.knownClassEnums, staxAttrs.knownClassEnums);
+    }
+
+    @Test public void shouldFlattenMarkupInValues() throws Exception {
+        ResBundle<String> strings = new ResBundle<String>();
+        new StaxDocumentLoader(new ValueResourceLoader(strings, "string", true)).loadResourceXmlDir(testResources(), "values");
+
+        assertEquals("Hello, world", strings.get(new ResName(TEST_PACKAGE, "string", "some_html"), ""));
+    }
+
+    private static String describe(ResBundle<String> resBundle) {
+        Map<String, List<String>> description = new TreeMap<String, List<String>>();
+        for (Map.Entry<ResName, ResBundle.Values<String>> entry : resBundle.values().entrySet()) {
+            List<String> values = new ArrayList<String>();
+            for (ResBundle.Value<String> value : entry.getValue()) {
+                values.add(value.qualifiers + "=" + value.value);
+            }
+            description.put(entry.getKey().getFullyQualifiedName(), values);
+        }
+        for (Map.Entry<ResName, ResBundle.Values<List<String>>> entry : resBundle.arrayValues().entrySet()) {
+            List<String> values = new ArrayList<String>();
+            for (ResBundle.Value<List<String>> value : entry.getValue()) {
+                values.add(value.qualifiers + "=" + value.value);
+            }
+            description.put(entry.getKey().getFullyQualifiedName(), values);
+        }
+        return description.toString();
+    }
+
+    private static String describePlurals(ResBundle<PluralResourceLoader.PluralRules> resBundle) {
+        Map<String, List<String>> description = new TreeMap<String, List<String>>();
+        for (Map.Entry<ResName, ResBundle.Values<PluralResourceLoader.PluralRules>> entry : resBundle.values().entrySet()) {
+            List<String> plurals = new ArrayList<String>();
+            for (ResBundle.Value<PluralResourceLoader.PluralRules> value : entry.getValue()) {
+                for (PluralResourceLoader.Plural plural : value.value.plurals) {
+                    plurals.add(value.qualifiers + plural.quantity + "=" + plural.string);
+                }
+            }
+            description.put(entry.getKey().getFullyQualifiedName(), plurals);
+        }
+        return description.toString();
+    }
+}
@@ -36,7 +36,9 @@ import org.robolectric.util.I18nException;
 import org.robolectric.util.TestUtil;
 
 import java.util.ArrayList;
+import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
@@ -410,6 +412,45 @@ public class ViewLoaderTest {
         inflate("text_views");
     }
 
+    @Test
+    public void shouldInflateFreshViewsEachTimeALayoutIsInflated() throws Exception {
+        ViewGroup first = (ViewGroup) new LayoutBuilder(resourceLoader()).inflateView(context, R.layout.media, null, "");
+        int compiledPlanCount = LayoutBuilder.getCompiledPlanCount();
+        ViewGroup second = (ViewGroup) new LayoutBuilder(resourceLoader()).inflateView(context, R.layout.media, null, "");
+
+        assertEquals(compiledPlanCount, LayoutBuilder.getCompiledPlanCount());
+        assertFalse(first == second);
+        assertEquals(first.getChildCount(), second.getChildCount());
+        assertFalse(first.getChildAt(0) == second.getChildAt(0));
+        assertSame(first.getChildAt(0).getClass(), second.getChildAt(0).getClass());
+    }
+
+    @Test
+    public void shouldReuseThePlanWhenALayoutIsInflatedWithTheSameExtraAttributes() throws Exception {
+        ResName media = new ResName(TEST_PACKAGE + ":layout/media");
+        List<Attribute> attributes = asList(new Attribute("android:attr/contentDescription", "same plan", TEST_PACKAGE));
+
+        int compiledPlanCount = LayoutBuilder.getCompiledPlanCount();
+        View first = new LayoutBuilder(resourceLoader()).inflateView(context, media, attributes, null, "");
+        assertTrue(LayoutBuilder.getCompiledPlanCount() > compiledPlanCount);
+
+        compiledPlanCount = LayoutBuilder.getCompiledPlanCount();
+        View second = new LayoutBuilder(resourceLoader()).inflateView(context, media, new ArrayList<Attribute>(attributes), null, "");
+        assertEquals(compiledPlanCount, LayoutBuilder.getCompiledPlanCount());
+        assertFalse(first == second);
+    }
+
+    @Test(expected=I18nException.class)
+    public void shouldStillCheckForBareStringsWhenALayoutWasInflatedBefore() throws Exception {
+        new LayoutBuilder(resourceLoader()).inflateView(context, R.layout.text_views, null, "");
+        Robolectric.getShadowApplication().setStrictI18n(true);
+        new LayoutBuilder(resourceLoader()).inflateView(context, R.layout.text_views, null, "");
+    }
+
+    private ResourceLoader resourceLoader() {
+        return shadowOf(context.getResources()).getResourceLoader();
+    }
+
     private View inflate(String packageName, String layoutName, String qualifiers) {
         return inflate(context, packageName, layoutName, null, qualifiers);
     }
@@ -1,5 +1,7 @@
 package org.robolectric.shadows;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.robolectric.TestRunners;
@@ -11,8 +13,10 @@ import android.os.AsyncTask;
 
 import org.robolectric.Robolectric;
 import org.robolectric.util.Join;
+import org.robolectric.util.RobolectricBackgroundExecutorService;
 import org.robolectric.util.Transcript;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
@@ -120,6 +124,83 @@ public class AsyncTaskTest {
         assertThat(asyncTask.getStatus(), is(AsyncTask.Status.FINISHED));
     }
 
+    @Test
+    public void withRealThreads_callbacksWaitForTheTestToRunTheMainLooper() throws Exception {
+        useRealBackgroundThreads();
+        Robolectric.getUiThreadScheduler().unPause();
+        final List<Thread> callbackThreads = new ArrayList<Thread>();
+        AsyncTask<String, String, String> asyncTask = new MyAsyncTask() {
+            @Override protected String doInBackground(String... strings) {
+                publishProgress("50%");
+                return "done";
+            }
+
+            @Override protected void onProgressUpdate(String... values) {
+                callbackThreads.add(Thread.currentThread());
+                super.onProgressUpdate(values);
+            }
+
+            @Override protected void onPostExecute(String s) {
+                callbackThreads.add(Thread.currentThread());
+                super.onPostExecute(s);
+            }
+        };
+
+        asyncTask.execute("a");
+        transcript.assertEventsSoFar("onPreExecute");
+        waitForBackgroundThreads();
+        assertEquals("done", asyncTask.get());
+        transcript.assertNoEventsSoFar();
+
+        Robolectric.runUiThreadTasks();
+        transcript.assertEventsSoFar("onProgressUpdate 50%", "onPostExecute done");
+        assertEquals(asList(Thread.currentThread(), Thread.currentThread()), callbackThreads);
+    }
+
+    @Test
+    public void withRealThreads_exceptionsFromDoInBackgroundAreRethrownOnTheMainLooper() throws Exception {
+        useRealBackgroundThreads();
+        final RuntimeException exception = new RuntimeException("fail");
+        AsyncTask<String, String, String> asyncTask = new MyAsyncTask() {
+            @Override protected String doInBackground(String... strings) {
+                throw exception;
+            }
+        };
+
+        asyncTask.execute("a");
+        waitForBackgroundThreads();
+        transcript.assertEventsSoFar("onPreExecute");
+
+        try {
+            Robolectric.runUiThreadTasks();
+            fail("should have rethrown the exception from doInBackground()");
+        } catch (RuntimeException e) {
+            assertSame(exception, e.getCause());
+        }
+        transcript.assertNoEventsSoFar();
+    }
+
+    private void useRealBackgroundThreads() {
+        String originalThreads = System.getProperty(RobolectricBackgroundExecutorService.BACKGROUND_THREADS_PROPERTY);
+        System.setProperty(RobolectricBackgroundExecutorService.BACKGROUND_THREADS_PROPERTY, "2");
+        try {
+            assertTrue(Robolectric.getShadowApplication().getBackgroundExecutor().usesRealThreads());
+        } finally {
+            if (originalThreads == null) {
+                System.clearProperty(RobolectricBackgroundExecutorService.BACKGROUND_THREADS_PROPERTY);
+            } else {
+                System.setProperty(RobolectricBackgroundExecutorService.BACKGROUND_THREADS_PROPERTY, originalThreads);
+            }
+        }
+    }
+
+    // once the pool has terminated, each task has finished and posted its callbacks to the main looper
+    private void waitForBackgroundThreads() throws InterruptedException {
+        RobolectricBackgroundExecutorService backgroundExecutor = Robolectric.getShadowApplication().getBackgroundExecutor();
+        backgroundExecutor.shutdown();
+        assertTrue(backgroundExecutor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
     private class MyAsyncTask extends AsyncTask<String, String, String> {
         @Override protected void onPreExecute() {
             transcript.add("onPreExecute");
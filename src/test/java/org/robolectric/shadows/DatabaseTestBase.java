@@ -3,6 +3,7 @@ package org.robolectric.shadows;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import org.robolectric.Robolectric;
 import org.junit.After;
 import org.junit.Before;
@@ -327,6 +328,37 @@ public abstract class DatabaseTestBase {
         assertEmptyDatabase();
     }
 
+    @Test
+    public void testCursorKeepsRowsDeletedAfterTheQuery() throws Exception {
+        addChuck();
+        addJulie();
+        Cursor cursor = database.query("table_name", new String[]{"name"}, null, null, null, null, "id");
+        assertThat(cursor.moveToFirst(), equalTo(true));
+
+        database.delete("table_name", "1", null);
+
+        assertThat(cursor.getCount(), equalTo(2));
+        assertThat(cursor.moveToNext(), equalTo(true));
+        assertThat(cursor.getString(0), equalTo("Julie"));
+    }
+
+    @Test
+    public void testCursorKeepsRowsChangedByACompiledStatementAfterTheQuery() throws Exception {
+        addChuck();
+        addJulie();
+        Cursor cursor = database.query("table_name", new String[]{"name"}, null, null, null, null, "id");
+        assertThat(cursor.moveToFirst(), equalTo(true));
+
+        SQLiteStatement insert = database.compileStatement("INSERT INTO table_name (name) VALUES(?)");
+        insert.bindString(1, "Jimmy");
+        insert.executeInsert();
+        database.compileStatement("DELETE FROM table_name WHERE name = 'Julie'").execute();
+
+        assertThat(cursor.getCount(), equalTo(2));
+        assertThat(cursor.moveToNext(), equalTo(true));
+        assertThat(cursor.getString(0), equalTo("Julie"));
+    }
+
     @Test
     public void testDeleteNoMatch() throws Exception {
         addChuck();
@@ -5,8 +5,14 @@ import android.os.HandlerThread;
 import android.os.Looper;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
 import org.robolectric.TestRunners;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
@@ -115,8 +121,40 @@ public class LooperTest {
         assertFalse(shadowOf(looper).getScheduler().areAnyRunnable());
     }
     
+    @Test
+    public void fastForward_runsTasksOnEveryLooperAndInTheBackgroundInOrder() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        HandlerThread ht = new HandlerThread("test1");
+        ht.start();
+        Looper looper = ht.getLooper();
+        shadowOf(looper).pause();
+        Robolectric.getBackgroundScheduler().pause();
+
+        new Handler().postDelayed(new AddEvent(events, "main"), 300);
+        new Handler(looper).postDelayed(new AddEvent(events, "handler thread"), 100);
+        Robolectric.getBackgroundScheduler().postDelayed(new AddEvent(events, "background"), 200);
+
+        assertEquals(3, ShadowLooper.fastForward(1000));
+        assertEquals(asList("handler thread", "background", "main"), events);
+    }
+
     @Test
     public void testLoopThread() {
     	assertTrue(shadowOf(Looper.getMainLooper()).getThread() == Thread.currentThread());
     }
+
+    private static class AddEvent implements Runnable {
+        private final List<String> events;
+        private final String event;
+
+        AddEvent(List<String> events, String event) {
+            this.events = events;
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            events.add(event);
+        }
+    }
 }
@@ -287,6 +287,18 @@ public class SQLiteCursorTest {
         assertThat(cursor.getDouble(4), equalTo(3.14159));
     }
 
+    @Test
+    public void testReadsRowsFromTheResultSetAsItMoves() throws Exception {
+        cursor.moveToFirst();
+        assertThat(resultSet.getRow(), equalTo(1));
+
+        assertThat(cursor.getCount(), equalTo(3));
+        assertThat(cursor.moveToPosition(2), equalTo(true));
+        assertThat(cursor.getString(1), equalTo("Chris"));
+        assertThat(cursor.moveToPrevious(), equalTo(true));
+        assertThat(cursor.getString(1), equalTo("Julie"));
+    }
+
     @Test
     public void testClose() throws Exception {
         assertThat(cursor.isClosed(), equalTo(false));
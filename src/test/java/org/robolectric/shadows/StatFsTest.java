@@ -3,6 +3,7 @@ package org.robolectric.shadows;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
+import org.robolectric.Robolectric;
 import org.robolectric.TestRunners;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -44,6 +45,14 @@ public class StatFsTest {
         assertThat(statsFs.getBlockSize(), equalTo(ShadowStatFs.BLOCK_SIZE));
     }
 
+    @Test
+    public void shouldBeResetByResetStaticState() throws Exception {
+        ShadowStatFs.registerStats("/tmp", 100, 20, 10);
+        Robolectric.resetStaticState();
+
+        assertThat(new StatFs("/tmp").getBlockCount(), equalTo(0));
+    }
+
     @Test
     public void shouldRestat() throws Exception {
         ShadowStatFs.registerStats("/tmp", 100, 20, 10);
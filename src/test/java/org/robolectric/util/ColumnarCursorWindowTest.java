@@ -0,0 +1,75 @@
+package org.robolectric.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarCursorWindowTest {
+    @Test
+    public void shouldReadValuesBackAsTheTypeTheyWerePutIn() throws Exception {
+        byte[] blob = {1, 2, 3};
+        ColumnarCursorWindow window = new ColumnarCursorWindow(5);
+        window.addRow(new Object[]{42, 3.3, 0.1f, "foo", blob});
+
+        assertThat(window.getLong(0, 0), equalTo(42L));
+        assertThat(window.getDouble(0, 1), equalTo(3.3));
+        assertThat(window.getFloat(0, 2), equalTo(0.1f));
+        assertThat(window.getString(0, 3), equalTo("foo"));
+        assertThat(window.getBlob(0, 4), equalTo(blob));
+        assertThat(window.getType(0, 2), equalTo(ColumnarCursorWindow.TYPE_FLOAT));
+    }
+
+    @Test
+    public void shouldConvertBetweenTypes() throws Exception {
+        ColumnarCursorWindow window = new ColumnarCursorWindow(4);
+        window.addRow(new Object[]{42L, 3.7, 0.1f, "12"});
+
+        assertThat(window.getString(0, 0), equalTo("42"));
+        assertThat(window.getDouble(0, 0), equalTo(42.0));
+        assertThat(window.getInt(0, 1), equalTo(3));
+        assertThat(window.getShort(0, 1), equalTo((short) 3));
+        assertThat(window.getString(0, 1), equalTo("3.7"));
+        assertThat(window.getString(0, 2), equalTo("0.1"));
+        assertThat(window.getInt(0, 3), equalTo(12));
+        assertThat(window.getLong(0, 3), equalTo(12L));
+    }
+
+    @Test
+    public void shouldTreatMissingValuesAsNull() throws Exception {
+        ColumnarCursorWindow window = new ColumnarCursorWindow(3);
+        window.addRow(new Object[]{null, 1});
+
+        assertTrue(window.isNull(0, 0));
+        assertTrue(window.isNull(0, 2));
+        assertThat(window.getString(0, 2), nullValue());
+        assertThat(window.getLong(0, 2), equalTo(0L));
+        assertThat(window.getDouble(0, 2), equalTo(0.0));
+    }
+
+    @Test
+    public void shouldKeepRowsAcrossBlocks() throws Exception {
+        ColumnarCursorWindow window = new ColumnarCursorWindow(2);
+        int rows = ColumnarCursorWindow.ROWS_PER_BLOCK * 5 + 3;
+        for (int i = 0; i < rows; i++) {
+            int row = window.addRow();
+            window.putLong(row, 0, i);
+            if (i % 2 == 0) window.putString(row, 1, "row " + i);
+        }
+
+        assertThat(window.getRowCount(), equalTo(rows));
+        for (int i = 0; i < rows; i++) {
+            assertThat(window.getLong(i, 0), equalTo((long) i));
+            assertThat(window.getString(i, 1), equalTo(i % 2 == 0 ? "row " + i : null));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldComplainAboutRowsThatArentThere() throws Exception {
+        ColumnarCursorWindow window = new ColumnarCursorWindow(1);
+        window.addRow();
+        window.getLong(1, 0);
+    }
+}
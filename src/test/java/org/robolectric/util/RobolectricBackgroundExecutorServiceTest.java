@@ -6,12 +6,20 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(TestRunners.WithDefaults.class)
 public class RobolectricBackgroundExecutorServiceTest {
@@ -74,4 +82,85 @@ public class RobolectricBackgroundExecutorServiceTest {
 
         assertEquals("foo", future.get());
     }
+
+    @Test
+    public void shutdown_shouldRejectNewTasksButRunPendingOnes() throws Exception {
+        executorService.execute(runnable);
+        executorService.shutdown();
+
+        assertTrue(executorService.isShutdown());
+        assertFalse(executorService.isTerminated());
+        try {
+            executorService.execute(runnable);
+            fail("should have rejected the task");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        Robolectric.runBackgroundTasks();
+        transcript.assertEventsSoFar("background event ran");
+        assertTrue(executorService.isTerminated());
+        assertTrue(executorService.awaitTermination(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shutdownNow_shouldHandBackPendingTasksWithoutRunningThem() throws Exception {
+        executorService.execute(runnable);
+
+        List<Runnable> neverRun = executorService.shutdownNow();
+        assertEquals(1, neverRun.size());
+        assertSame(runnable, neverRun.get(0));
+        assertTrue(executorService.isTerminated());
+
+        Robolectric.runBackgroundTasks();
+        transcript.assertNoEventsSoFar();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void invokeAll_shouldFailRatherThanWaitForTheBackgroundScheduler() throws Exception {
+        executorService.invokeAll(asList(callable("foo")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void invokeAny_shouldFailRatherThanWaitForTheBackgroundScheduler() throws Exception {
+        executorService.invokeAny(asList(callable("foo")), 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void withRealThreads_invokeAllShouldWaitForTheTasks() throws Exception {
+        executorService = new RobolectricBackgroundExecutorService(2);
+
+        List<Future<String>> futures = executorService.invokeAll(asList(callable("foo"), callable("bar")));
+        assertEquals("foo", futures.get(0).get());
+        assertEquals("bar", futures.get(1).get());
+        executorService.shutdown();
+    }
+
+    @Test
+    public void withRealThreads_shouldRunTasksConcurrentlyOffTheTestThread() throws Exception {
+        executorService = new RobolectricBackgroundExecutorService(2);
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        Callable<Thread> waitForTheOther = new Callable<Thread>() {
+            @Override public Thread call() throws Exception {
+                bothStarted.countDown();
+                assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+                return Thread.currentThread();
+            }
+        };
+
+        Future<Thread> first = executorService.submit(waitForTheOther);
+        Future<Thread> second = executorService.submit(waitForTheOther);
+        executorService.shutdown();
+
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), first.get());
+        assertNotSame(first.get(), second.get());
+    }
+
+    private static Callable<String> callable(final String value) {
+        return new Callable<String>() {
+            @Override public String call() throws Exception {
+                return value;
+            }
+        };
+    }
 }
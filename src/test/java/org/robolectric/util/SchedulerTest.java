@@ -3,8 +3,14 @@ package org.robolectric.util;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SchedulerTest {
     private Transcript transcript;
@@ -149,6 +155,126 @@ public class SchedulerTest {
         assertThat(runnable2.wasRun, equalTo(true));
     }
 
+    @Test
+    public void shouldOrderRunnablesWithDelaysTooFarApartForAnInt() throws Exception {
+        scheduler.postDelayed(new AddToTranscript("later"), Integer.MAX_VALUE * 3L);
+        scheduler.postDelayed(new AddToTranscript("sooner"), 1);
+
+        scheduler.advanceToLastPostedRunnable();
+        transcript.assertEventsSoFar("sooner", "later");
+    }
+
+    @Test
+    public void shouldRunManyRunnablesInTimeOrderAndFirstInFirstOutForTheSameTime() throws Exception {
+        final List<long[]> runs = new ArrayList<long[]>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            final long sequence = i;
+            scheduler.postDelayed(new Runnable() {
+                @Override public void run() {
+                    runs.add(new long[] {scheduler.getCurrentTime(), sequence});
+                }
+            }, random.nextInt(100));
+        }
+
+        scheduler.advanceBy(50);
+        scheduler.advanceToLastPostedRunnable();
+
+        assertThat(runs.size(), equalTo(20000));
+        for (int i = 1; i < runs.size(); i++) {
+            long[] previous = runs.get(i - 1), current = runs.get(i);
+            assertTrue(previous[0] < current[0] || previous[0] == current[0] && previous[1] < current[1]);
+        }
+    }
+
+    @Test
+    public void removeShouldLeaveTheRestOfTheQueueInOrder() throws Exception {
+        Runnable removed = new AddToTranscript("removed");
+        for (int i = 0; i < 10; i++) {
+            scheduler.postDelayed(new AddToTranscript("kept " + i), 10 - i);
+            scheduler.postDelayed(removed, i);
+        }
+        scheduler.remove(removed);
+
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(10));
+        scheduler.advanceToLastPostedRunnable();
+        transcript.assertEventsSoFar("kept 9", "kept 8", "kept 7", "kept 6", "kept 5", "kept 4", "kept 3", "kept 2", "kept 1", "kept 0");
+    }
+
+    @Test
+    public void fastForwardShouldRunTasksFromEverySchedulerInTheOrderTheyFallDue() throws Exception {
+        final Scheduler other = new Scheduler();
+        other.postDelayed(new TestRunnable(), 500);
+        other.advanceBy(500);
+        scheduler.postDelayed(new AddToTranscript("one"), 10);
+        other.postDelayed(new AddToTranscript("two"), 20);
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                transcript.add("three");
+                other.postDelayed(new AddToTranscript("four"), 5);
+            }
+        }, 30);
+        other.postDelayed(new AddToTranscript("too late"), 1001);
+
+        assertThat(Scheduler.fastForward(1000, 100, scheduler, other), equalTo(4));
+        transcript.assertEventsSoFar("one", "two", "three", "four");
+        assertThat(scheduler.getCurrentTime(), equalTo(1000L));
+        assertThat(other.getCurrentTime(), equalTo(1500L));
+        assertThat(other.enqueuedTaskCount(), equalTo(1));
+    }
+
+    @Test
+    public void fastForwardShouldTimeTasksPostedToAnIdleSchedulerFromTheSharedClock() throws Exception {
+        final Scheduler other = new Scheduler();
+        other.postDelayed(new AddToTranscript("five"), 34);
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                transcript.add("three");
+                other.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        transcript.add("six at " + other.getCurrentTime());
+                    }
+                }, 5);
+            }
+        }, 30);
+
+        assertThat(Scheduler.fastForward(1000, 100, scheduler, other), equalTo(3));
+        transcript.assertEventsSoFar("three", "five", "six at 35");
+        assertThat(other.getCurrentTime(), equalTo(1000L));
+    }
+
+    @Test
+    public void fastForwardShouldGiveUpWhenTheTaskBudgetRunsOut() throws Exception {
+        for (int i = 0; i < 11; i++) {
+            scheduler.postDelayed(new TestRunnable(), i);
+        }
+
+        try {
+            Scheduler.fastForward(1000, 10, scheduler);
+            fail("should have run out of budget");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void fastForwardShouldNoticeRunnablesThatRepostThemselvesWithNoDelay() throws Exception {
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                scheduler.post(this);
+            }
+        });
+
+        try {
+            Scheduler.fastForward(1000, Scheduler.DEFAULT_FAST_FORWARD_TASK_BUDGET, scheduler);
+            fail("should have noticed the loop");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
     private class AddToTranscript implements Runnable {
         private String event;
 